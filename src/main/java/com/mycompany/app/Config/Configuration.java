@@ -14,6 +14,65 @@ public class Configuration {
     public String jdbcPostgresDatabase = "postgres";
     public String jdbcPostgresUser = "postgres";
     public String jdbcPostgresPassword = "password";
+    // pgjdbc turns a statement into a named server-side one after
+    // jdbcPrepareThreshold executions on a connection, after that its parse
+    // and plan are reused. Each connection keeps up to
+    // jdbcPreparedStatementCacheQueries of them (and jdbcPreparedStatementCacheSizeMiB)
+    public Integer jdbcPrepareThreshold = 1;
+    public Integer jdbcPreparedStatementCacheQueries = 256;
+    public Integer jdbcPreparedStatementCacheSizeMiB = 5;
+    // batchUpdate sends rows jdbcBatchSize at a time, with
+    // jdbcReWriteBatchedInserts pgjdbc folds a batch of INSERTs into
+    // multi-row INSERTs, far fewer statements for the server to run
+    public Integer jdbcBatchSize = 1000;
+    public Boolean jdbcReWriteBatchedInserts = true;
+    // rows JdbcTemplate.queryForStream pulls from the server per round trip
+    public Integer jdbcFetchSize = 1000;
+
+    // keep-alive, an idle connection is closed after keepAliveTimeout ms and
+    // any connection after maxKeepAliveRequests requests
+    public Integer keepAliveTimeout = 5000;
+    public Integer maxKeepAliveRequests = 100;
+
+    // bigger requests get a 431 (head) or 413 (body) and the connection closed
+    public Integer maxRequestHeaderSize = 8 * 1024;
+    public Integer maxRequestBodySize = 10 * 1024 * 1024;
+    // bodies above this (and chunked ones) are streamed to the handler
+    // through Request.getBodyStream() instead of being buffered first
+    public Integer requestBodyStreamThreshold = 64 * 1024;
+
+    // multipart/form-data: file parts above multipartSpillThreshold go to a
+    // temp file in multipartTempDir (java.io.tmpdir when null), anything past
+    // the size or part limits is answered with a 413
+    public Integer multipartSpillThreshold = 64 * 1024;
+    public Integer maxMultipartFieldSize = 64 * 1024;
+    public Long maxMultipartFileSize = 10L * 1024 * 1024;
+    public Integer maxMultipartParts = 128;
+    public String multipartTempDir;
+
+    // static files up to staticFileCacheMaxFileSize are kept in memory with
+    // their gzip variant, at most staticFileCacheSize bytes of them, bigger
+    // ones are sent from disk with FileChannel.transferTo
+    public Integer staticFileCacheMaxFileSize = 1024 * 1024;
+    public Long staticFileCacheSize = 64L * 1024 * 1024;
+
+    // streamed responses (Response.stream) go out in chunks of up to
+    // responseChunkSize bytes, a worker producing one waits while
+    // maxPendingResponseBytes of it are still queued for the socket
+    public Integer responseChunkSize = 16 * 1024;
+    public Integer maxPendingResponseBytes = 256 * 1024;
+
+    // handler responses of a text type (JSON, HTML, JavaScript, SVG...) are
+    // gzip or deflate encoded when the client accepts it, bodies in memory
+    // only from compressionMinSize bytes on. compressionLevel is 1-9
+    public Boolean compressResponses = true;
+    public Integer compressionMinSize = 1024;
+    public Integer compressionLevel = 6;
+
+    // debugging aid: pooled buffers and deflaters (BufferArena, DeflaterPool)
+    // that are never given back, or given back twice, are reported on stderr
+    // with the stack that took them. Slow, a stack trace per acquire
+    public Boolean bufferLeakDetection = false;
 
     public Configuration() {
 
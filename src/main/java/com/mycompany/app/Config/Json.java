@@ -0,0 +1,31 @@
+package com.mycompany.app.Config;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+// The one ObjectMapper the server uses. Jackson 3 mappers are immutable and
+// safe to share, and building one means scanning modules and setting up
+// caches, so it's done once here instead of per request. Writers are kept
+// per type too, an ObjectWriter made for a type has its serializer looked up
+// already.
+public final class Json {
+    public static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private static final ObjectWriter UNTYPED_WRITER = MAPPER.writer();
+    private static final ConcurrentHashMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private Json() {
+    }
+
+    public static ObjectWriter writerFor(Class<?> type) {
+        return WRITERS.computeIfAbsent(type, MAPPER::writerFor);
+    }
+
+    // the writer for whatever value is at runtime
+    public static ObjectWriter writerForValue(Object value) {
+        return value == null ? UNTYPED_WRITER : writerFor(value.getClass());
+    }
+}
@@ -0,0 +1,15 @@
+package com.mycompany.app.Errors;
+
+import lombok.Getter;
+
+// a request the server refuses to handle, answered with statusCode and the
+// connection closed
+@Getter
+public class HttpRequestError extends RuntimeException {
+    private final int statusCode;
+
+    public HttpRequestError(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+}
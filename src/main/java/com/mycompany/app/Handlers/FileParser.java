@@ -1,52 +1,32 @@
 package com.mycompany.app.Handlers;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Request.MultipartParser;
+import com.mycompany.app.Request.Part;
+
 public class FileParser {
+    // for a body that is already a String, requests go through
+    // Request.getParts() which streams the body instead
     public static HashMap<String, String> parseMultipartFormData(String body, String boundary) {
         HashMap<String, String> result = new HashMap<>();
-
-        String delimiter = "--" + boundary;
-        String[] parts = body.split(delimiter);
-
-        for (String part : parts) {
-            part = part.trim();
-
-            if (part.isEmpty() || part.equals("--")) {
-                continue;
-            }
-
-            String[] sections = part.split("\r\n\r\n", 2);
-            if (sections.length != 2) {
-                continue;
-            }
-
-            String headers = sections[0];
-            String content = sections[1];
-
-            content = content.replaceAll("\r\n$", "");
-
-            String name = null;
-
-            for (String headerLine : headers.split("\r\n")) {
-                headerLine = headerLine.trim();
-
-                if (headerLine.startsWith("Content-Disposition")) {
-                    String[] tokens = headerLine.split(";");
-                    for (String token : tokens) {
-                        token = token.trim();
-                        if (token.startsWith("name=")) {
-                            name = token.substring(5).replace("\"", "");
-                        }
-                    }
-                }
-            }
-
-            if (name != null) {
-                result.put(name, content);
+        Configuration config = new Configuration();
+        config.setMaxMultipartFileSize(Long.MAX_VALUE);
+        config.setMaxMultipartFieldSize(Integer.MAX_VALUE);
+        config.setMultipartSpillThreshold(Integer.MAX_VALUE);
+        try {
+            for (Part part : new MultipartParser(
+                    new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), boundary, config).parse()) {
+                result.put(part.getName(), part.getString());
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
         return result;
     }
 
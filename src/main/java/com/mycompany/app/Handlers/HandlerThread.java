@@ -1,61 +1,69 @@
 package com.mycompany.app.Handlers;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.Socket;
 
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Errors.HttpRequestError;
 import com.mycompany.app.Request.Request;
-import com.mycompany.app.Response.Route;
+import com.mycompany.app.Request.RequestReader;
+import com.mycompany.app.sockets.ChannelOutputStream;
 
 public class HandlerThread implements Runnable {
     Socket socket;
     HttpDriver driver;
+    Configuration config;
 
     public HandlerThread(Socket socket, HttpDriver driver) {
+        this(socket, driver, ConfigurationManager.getInstance().getConfig());
+    }
+
+    public HandlerThread(Socket socket, HttpDriver driver, Configuration config) {
         this.socket = socket;
         this.driver = driver;
+        this.config = config;
     }
 
     @Override
     public void run() {
         try {
             System.err.println("Request handled by" + Thread.currentThread());
-            Request bodyProcessor = new Request(socket.getInputStream());
-            Thread.sleep(200);
-            if (bodyProcessor.getRequest().length() == 0 || bodyProcessor.getMethod().equals("OPTIONS")) {
-                // just made it return this untill I implement proper OPTIONS
-                // handling
-                String headers = "HTTP/1.1 204 No Content\r\n" +
-                        "Access-Control-Allow-Origin: *\r\n" +
-                        "Access-Control-Allow-Methods: POST, GET, OPTIONS\r\n" +
-                        "Access-Control-Allow-Headers: Content-Type\r\n" +
-                        "\r\n";
-                byte[] bytes = headers.getBytes();
-                socket.getOutputStream().write(bytes);
-                socket.close();
-                return;
-            }
+            RequestReader reader = new RequestReader(socket.getInputStream(),
+                    config.getMaxRequestHeaderSize(), config.getMaxRequestBodySize(),
+                    config.getRequestBodyStreamThreshold());
+            // sockets from MainServerThread come with a channel, files are
+            // sent through it without passing through the heap
+            OutputStream out = socket.getChannel() != null ? new ChannelOutputStream(socket.getChannel())
+                    : socket.getOutputStream();
 
-            if (bodyProcessor.getPath().equals("/favicon.ico")) {
-                // this too
-                String headers = "HTTP/1.1 204 No Content\r\n" +
-                        "Access-Control-Allow-Origin: *\r\n" +
-                        "Access-Control-Allow-Methods: POST, GET, OPTIONS\r\n" +
-                        "Access-Control-Allow-Headers: Content-Type\r\n" +
-                        "\r\n";
-                byte[] bytes = headers.getBytes();
-                socket.getOutputStream().write(bytes);
-                socket.close();
-                return;
+            // the socket timeout set by the accept loop doubles as the idle
+            // timeout, reader.next() gives up with null once it passes
+            int served = 0;
+            boolean keepAlive = true;
+            while (keepAlive) {
+                Request bodyProcessor;
+                try {
+                    bodyProcessor = reader.next();
+                } catch (HttpRequestError e) {
+                    out.write(HttpDriver.errorResponse(e.getStatusCode()));
+                    out.flush();
+                    break;
+                }
+                if (bodyProcessor == null) {
+                    break;
+                }
+                served++;
+                keepAlive = driver.dispatch(bodyProcessor, out,
+                        bodyProcessor.isKeepAlive() && served < config.getMaxKeepAliveRequests());
             }
-            Route route = driver.findRoute(
-                    new Route(bodyProcessor.getCoreData().get("method"), bodyProcessor.getCoreData().get("path")));
-
-            route.executeRoute(socket.getOutputStream(), bodyProcessor);
-
             socket.close();
 
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
+        } catch (IOException e) {
+            // rethrown so the accept loop's completion callback gets to see it
+            throw new UncheckedIOException(e);
         }
 
     }
@@ -1,10 +1,13 @@
 package com.mycompany.app.Handlers;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.NoSuchElementException;
 
+import com.mycompany.app.Errors.HttpRequestError;
+import com.mycompany.app.Request.Request;
+import com.mycompany.app.Response.HttpResponseText;
 import com.mycompany.app.Response.Route;
 
 import lombok.Getter;
@@ -14,6 +17,9 @@ public class HttpDriver {
 
     public static final ArrayList<Route> threadRoutes = new ArrayList<>();
 
+    // threadRoutes compiled for lookups, rebuilt when routes were added since
+    private volatile RouteTree routeTree;
+
     public HttpDriver() {
     }
 
@@ -25,48 +31,118 @@ public class HttpDriver {
         HttpDriver.threadRoutes.add(new Route(method, route));
     }
 
-    public Route findRoute(Route route) {
-        ArrayList<Route> routes = HttpDriver.threadRoutes;
-        Route foundRoute = null;
+    public void dispatch(Request request, OutputStream out) throws IOException {
+        dispatch(request, out, false);
+    }
+
+    // runs the request through the matching route and writes the response to
+    // out, shared by the blocking and the selector transports. Returns whether
+    // the connection stays open for another request.
+    public boolean dispatch(Request request, OutputStream out, boolean keepAlive) throws IOException {
+        if (request.getMethod().equals("OPTIONS") || request.getPath().equals("/favicon.ico")) {
+            // just made it return this untill I implement proper OPTIONS
+            // handling, favicon too
+            // a body it came with still has to come off the connection, or
+            // it gets read as the next request
+            if (!request.discardBody(Route.DISCARD_LIMIT)) {
+                keepAlive = false;
+            }
+            String headers = "HTTP/1.1 204 No Content\r\n" +
+                    "Access-Control-Allow-Origin: *\r\n" +
+                    "Access-Control-Allow-Methods: POST, GET, OPTIONS\r\n" +
+                    "Access-Control-Allow-Headers: Content-Type\r\n" +
+                    "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+                    "\r\n";
+            out.write(headers.getBytes());
+            out.flush();
+            return keepAlive;
+        }
+
+        RouteTree.Match match = routes().find(request.getMethod(), request.getPath());
+        Route route;
+        if (match != null) {
+            route = match.getRoute();
+            request.setRouteParams(match.getParams());
+        } else {
+            route = notFoundRoute(new Route(request.getMethod(), request.getPath()));
+        }
+
         try {
-            foundRoute = routes.stream()
-                    .filter(curr -> curr.equals(route))
-                    .findFirst()
-                    .get();
-        } catch (NoSuchElementException e) {
-            System.err.println("Route not found: " + route.getMethod() + " " + route.getRoute());
-            foundRoute = new Route(route.getMethod(), route.getRoute(), (req, res) -> {
-                if (route.getRoute().split("\\.").length == 1) {
-                    // if route is not found we are going to return the notfound file
-                    // this would be set to the response getting back to the browser
-
-                    // if the browswer is asking for lets say .css or .js file
-                    // first the response would have the notfound.html as the returned type
-                    // then if you go to executeRoute method in the route you would find that if
-                    // a file is returned the return content would be overwritten with the required
-                    // file, not the notfound.html file
-
-                    System.err.println("Inside not found route handler");
-                    res.setStatusCode(404);
-                    try {
-                        res.httpFileResponse("/notfound.html");
-                    } catch (IOException e1) {
-                        e1.printStackTrace();
-                    }
+            return route.executeRoute(out, request, keepAlive);
+        } catch (HttpRequestError e) {
+            // the handler found the body unusable (a broken or too big
+            // multipart upload), nothing of the response was written yet
+            out.write(errorResponse(e.getStatusCode()));
+            out.flush();
+            return false;
+        }
+    }
+
+    // what gets sent back when the request itself is refused (413, 431, 400),
+    // the connection is closed right after
+    public static byte[] errorResponse(int statusCode) {
+        return ("HTTP/1.1 " + HttpResponseText.getStatusLine(statusCode) + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes();
+    }
+
+    // builds the route tree up front instead of on the first request
+    public void compileRoutes() {
+        routes();
+    }
+
+    private RouteTree routes() {
+        RouteTree tree = routeTree;
+        if (tree == null || tree.size() != threadRoutes.size()) {
+            synchronized (this) {
+                tree = routeTree;
+                if (tree == null || tree.size() != threadRoutes.size()) {
+                    tree = new RouteTree(new ArrayList<>(threadRoutes));
+                    routeTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    public Route findRoute(Route route) {
+        RouteTree.Match match = routes().find(route.getMethod(), route.getRoute());
+        return match != null ? match.getRoute() : notFoundRoute(route);
+    }
+
+    private Route notFoundRoute(Route route) {
+        System.err.println("Route not found: " + route.getMethod() + " " + route.getRoute());
+        return new Route(route.getMethod(), route.getRoute(), (req, res) -> {
+            if (route.getRoute().split("\\.").length == 1) {
+                // if route is not found we are going to return the notfound file
+                // this would be set to the response getting back to the browser
+
+                // if the browswer is asking for lets say .css or .js file
+                // first the response would have the notfound.html as the returned type
+                // then if you go to executeRoute method in the route you would find that if
+                // a file is returned the return content would be overwritten with the required
+                // file, not the notfound.html file
+
+                System.err.println("Inside not found route handler");
+                res.setStatusCode(404);
+                try {
+                    res.httpFileResponse("/notfound.html");
+                } catch (IOException e1) {
+                    e1.printStackTrace();
                 }
-                if (route.getRoute().contains(".css") || route.getRoute().contains(".js")) {
-                    System.err.println("Inside static file route handler");
-                    try {
-                        res.httpFileResponse(route.getRoute());
-                    } catch (IOException e1) {
-                        e1.printStackTrace();
-                    }
+            }
+            if (route.getRoute().contains(".css") || route.getRoute().contains(".js")) {
+                System.err.println("Inside static file route handler");
+                try {
+                    res.httpFileResponse(route.getRoute());
+                } catch (IOException e1) {
+                    e1.printStackTrace();
                 }
+            }
 
-                return res;
-            });
-        }
-        return foundRoute;
+            return res;
+        });
     }
 
 }
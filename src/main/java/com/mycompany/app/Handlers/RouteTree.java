@@ -0,0 +1,269 @@
+package com.mycompany.app.Handlers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mycompany.app.Request.RouteParams;
+import com.mycompany.app.Response.Route;
+
+import lombok.Getter;
+
+// The registered routes compiled into one tree per method, a level per path
+// segment. A node has its static children in a map, at most one :param child
+// and the routes that end in a * right below it, so finding a route costs a map lookup per segment of the
+// request path no matter how many routes there are. Static segments win over
+// :param which wins over *, a branch that dead ends falls back to the next.
+//
+// Route patterns are the same as for Route.equals: "/users/:id" captures a
+// segment, a trailing "*" (or "*name") captures the rest of the path and a
+// query part like "?id=int" has to match the request's query parameters.
+public class RouteTree {
+
+    @Getter
+    public static class Match {
+        private final Route route;
+        private final RouteParams params;
+
+        Match(Route route, RouteParams params) {
+            this.route = route;
+            this.params = params;
+        }
+    }
+
+    // a route hanging off the node its path ends at
+    private static class Leaf {
+        final Route route;
+        // names of the captures in the order they show up in the path
+        final String[] paramNames;
+        // query parameter -> expected type, empty when the pattern has no query
+        final Map<String, String> query;
+
+        Leaf(Route route, String[] paramNames, Map<String, String> query) {
+            this.route = route;
+            this.paramNames = paramNames;
+            this.query = query;
+        }
+    }
+
+    private static class Node {
+        final HashMap<String, Node> children = new HashMap<>();
+        Node param;
+        // routes whose path ends here, and ones ending in a * below here
+        final ArrayList<Leaf> leaves = new ArrayList<>();
+        final ArrayList<Leaf> wildcards = new ArrayList<>();
+    }
+
+    private final HashMap<String, Node> roots = new HashMap<>();
+    private final int size;
+
+    public RouteTree(List<Route> routes) {
+        for (Route route : routes) {
+            insert(route);
+        }
+        this.size = routes.size();
+    }
+
+    // how many routes went in, lets HttpDriver notice routes added later
+    public int size() {
+        return size;
+    }
+
+    private void insert(Route route) {
+        String pattern = route.getRoute();
+        int queryStart = pattern.indexOf('?');
+        String path = queryStart == -1 ? pattern : pattern.substring(0, queryStart);
+        Map<String, String> query = queryStart == -1 ? Map.of() : parseQuery(pattern, queryStart + 1);
+
+        int[] bounds = segments(path, path.length());
+        int count = bounds.length / 2;
+        Node node = roots.computeIfAbsent(route.getMethod(), method -> new Node());
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String segment = path.substring(bounds[2 * i], bounds[2 * i + 1]);
+            if (segment.startsWith("*") && i == count - 1) {
+                names.add(segment.length() == 1 ? "*" : segment.substring(1));
+                node.wildcards.add(new Leaf(route, names.toArray(new String[0]), query));
+                return;
+            }
+            if (segment.startsWith(":")) {
+                names.add(segment.substring(1));
+                if (node.param == null) {
+                    node.param = new Node();
+                }
+                node = node.param;
+            } else {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+        node.leaves.add(new Leaf(route, names.toArray(new String[0]), query));
+    }
+
+    // target is the request target as sent, query string included
+    public Match find(String method, String target) {
+        Node root = roots.get(method);
+        if (root == null) {
+            return null;
+        }
+        int queryStart = target.indexOf('?');
+        int pathEnd = queryStart == -1 ? target.length() : queryStart;
+        HashMap<String, String> query = queryStart == -1 ? null : parseQuery(target, queryStart + 1);
+        int[] bounds = segments(target, pathEnd);
+        // which segment each capture came from, a * capture takes the rest
+        int[] captured = new int[bounds.length / 2 + 1];
+        return find(root, target, pathEnd, bounds, 0, query, captured, 0);
+    }
+
+    private Match find(Node node, String target, int pathEnd, int[] bounds, int index,
+            HashMap<String, String> query, int[] captured, int captures) {
+        int count = bounds.length / 2;
+        if (index == count) {
+            Leaf leaf = firstMatching(node.leaves, query);
+            if (leaf != null) {
+                return match(leaf, target, pathEnd, bounds, captured, captures);
+            }
+        } else {
+            String segment = target.substring(bounds[2 * index], bounds[2 * index + 1]);
+            Node child = node.children.get(segment);
+            if (child != null) {
+                Match found = find(child, target, pathEnd, bounds, index + 1, query, captured, captures);
+                if (found != null) {
+                    return found;
+                }
+            }
+            if (node.param != null) {
+                captured[captures] = index;
+                Match found = find(node.param, target, pathEnd, bounds, index + 1, query, captured, captures + 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        if (!node.wildcards.isEmpty() && index < count) {
+            Leaf leaf = firstMatching(node.wildcards, query);
+            if (leaf != null) {
+                captured[captures] = -1 - index;
+                return match(leaf, target, pathEnd, bounds, captured, captures + 1);
+            }
+        }
+        return null;
+    }
+
+    private static Leaf firstMatching(ArrayList<Leaf> leaves, HashMap<String, String> query) {
+        for (Leaf leaf : leaves) {
+            if (queryMatches(leaf.query, query)) {
+                return leaf;
+            }
+        }
+        return null;
+    }
+
+    private static Match match(Leaf leaf, String target, int pathEnd, int[] bounds, int[] captured, int captures) {
+        if (captures == 0) {
+            return new Match(leaf.route, RouteParams.EMPTY);
+        }
+        String[] values = new String[captures];
+        for (int i = 0; i < captures; i++) {
+            int index = captured[i];
+            values[i] = index >= 0 ? target.substring(bounds[2 * index], bounds[2 * index + 1])
+                    : target.substring(bounds[2 * (-1 - index)], pathEnd);
+        }
+        return new Match(leaf.route, new RouteParams(leaf.paramNames, values));
+    }
+
+    // same rules as Route.equals: the request has to have exactly the
+    // parameters the pattern names, each of the expected type
+    private static boolean queryMatches(Map<String, String> pattern, HashMap<String, String> query) {
+        int size = query == null ? 0 : query.size();
+        if (pattern.size() != size) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : pattern.entrySet()) {
+            String value = query.get(entry.getKey());
+            if (value == null || !matchesType(entry.getValue(), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesType(String type, String value) {
+        switch (type) {
+            case "int" -> {
+                int start = value.startsWith("-") ? 1 : 0;
+                if (start == value.length()) {
+                    return false;
+                }
+                for (int i = start; i < value.length(); i++) {
+                    if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "str" -> {
+                if (value.isEmpty()) {
+                    return false;
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_')) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "*" -> {
+                return true;
+            }
+            default -> {
+                return type.equals(value);
+            }
+        }
+    }
+
+    private static HashMap<String, String> parseQuery(String value, int start) {
+        HashMap<String, String> query = new HashMap<>();
+        while (start < value.length()) {
+            int end = value.indexOf('&', start);
+            if (end == -1) {
+                end = value.length();
+            }
+            int equals = value.indexOf('=', start);
+            if (equals != -1 && equals < end) {
+                query.put(value.substring(start, equals), value.substring(equals + 1, end));
+            }
+            start = end + 1;
+        }
+        return query;
+    }
+
+    // start/end pairs of the '/' separated segments of value[0, end), split
+    // the way String.split("/") does it: trailing empty segments are dropped
+    // and "/a" is the two segments "" and "a"
+    private static int[] segments(String value, int end) {
+        while (end > 0 && value.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (end == 0) {
+            return new int[0];
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (value.charAt(i) == '/') {
+                count++;
+            }
+        }
+        int[] bounds = new int[2 * count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int slash = value.indexOf('/', start);
+            int segmentEnd = slash == -1 || slash > end ? end : slash;
+            bounds[2 * i] = start;
+            bounds[2 * i + 1] = segmentEnd;
+            start = segmentEnd + 1;
+        }
+        return bounds;
+    }
+}
@@ -1,27 +1,67 @@
 package com.mycompany.app.Postgres;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLType;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.mycompany.app.Config.ConfigurationManager;
 import com.mycompany.app.Errors.DB.PostgresDatabaseConnectionError;
+import org.postgresql.PGConnection;
 
 public class JdbcTemplate extends PostgresDriver {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // parameter types by SQL, getParameterMetaData() costs pgjdbc a describe
+    // round trip, this way only the first call for a query pays it. Bounded,
+    // SQL built on the fly with values pasted in would fill it otherwise
+    private static final int MAX_CACHED_QUERIES = 1024;
+    private final ConcurrentHashMap<String, int[]> parameterTypes = new ConcurrentHashMap<>();
 
     public JdbcTemplate(ConfigurationManager manager) {
         super(manager);
     }
 
+    private void bindTyped(PreparedStatement stmt, String sql, Object... params) throws SQLException {
+        int[] types = parameterTypes.get(sql);
+        if (types == null) {
+            ParameterMetaData meta = stmt.getParameterMetaData();
+            types = new int[meta.getParameterCount()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = meta.getParameterType(i + 1);
+            }
+            if (parameterTypes.size() < MAX_CACHED_QUERIES) {
+                parameterTypes.put(sql, types);
+            }
+        }
+        for (int i = 0; i < params.length; i++) {
+            if (i < types.length) {
+                stmt.setObject(i + 1, params[i], types[i]);
+            } else {
+                // more params than placeholders, let the driver complain
+                stmt.setObject(i + 1, params[i]);
+            }
+        }
+    }
+
+    // the caller owns the result set and can't close the connection behind it,
+    // queryForStream is the way to read a big result
     public ResultSet query(String sqlQuery) {
         Connection conn = null;
         java.sql.Statement stmt = null;
@@ -159,9 +199,7 @@ public class JdbcTemplate extends PostgresDriver {
             conn = this.createConnection();
             stmt = this.getPreparedStatement(sqlQuery, conn);
 
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i], stmt.getParameterMetaData().getParameterType(i + 1));
-            }
+            bindTyped(stmt, sqlQuery, params);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
                 return extractor.extractData(rs);
@@ -183,87 +221,11 @@ public class JdbcTemplate extends PostgresDriver {
         }
     }
 
-    private Object convert(Object value, Class<?> targetType) {
-
-        if (value == null)
-            return null;
-
-        if (targetType.isAssignableFrom(value.getClass())) {
-            return value;
-        }
-
-        if (targetType == Integer.class || targetType == int.class) {
-            return ((Number) value).intValue();
-        }
-
-        if (targetType == Long.class || targetType == long.class) {
-            return ((Number) value).longValue();
-        }
-
-        if (targetType == Double.class || targetType == double.class) {
-            return ((Number) value).doubleValue();
-        }
-
-        if (targetType == Boolean.class || targetType == boolean.class) {
-            return value instanceof Boolean
-                    ? value
-                    : Boolean.parseBoolean(value.toString());
-        }
-
-        if (targetType == String.class) {
-            return value.toString();
-        }
-
-        throw new IllegalArgumentException(
-                "Unsupported conversion from " +
-                        value.getClass().getName() +
-                        " to " + targetType.getName());
-    }
-
-    private Map<String, Method> findSetters(Class<?> clazz) {
-        Map<String, Method> setters = new HashMap<>();
-
-        for (Method method : clazz.getMethods()) {
-            if (!method.getName().startsWith("set"))
-                continue;
-            if (method.getParameterCount() != 1)
-                continue;
-
-            String property = Character.toLowerCase(method.getName().charAt(3)) +
-                    method.getName().substring(4);
-
-            setters.put(property.toLowerCase(), method);
-        }
-
-        return setters;
-    }
-
+    // the current row as a clazz, through RowMapper
     private <T> T mapRow(ResultSet rs, Class<T> clazz) {
         try {
-            T instance = clazz.getDeclaredConstructor().newInstance();
-
-            ResultSetMetaData meta = rs.getMetaData();
-            int columnCount = meta.getColumnCount();
-
-            Map<String, Method> setters = findSetters(clazz);
-
-            for (int i = 1; i <= columnCount; i++) {
-                String column = meta.getColumnLabel(i);
-                Method setter = setters.get(column.toLowerCase());
-
-                if (setter == null) {
-                    continue;
-                }
-
-                Object value = rs.getObject(i);
-                Object converted = convert(value, setter.getParameterTypes()[0]);
-
-                setter.invoke(instance, converted);
-            }
-
-            return instance;
-
-        } catch (ReflectiveOperationException | SQLException e) {
+            return RowMapper.of(clazz, rs.getMetaData()).map(rs);
+        } catch (SQLException e) {
             throw new RuntimeException(
                     "Failed to map result set to " + clazz.getName(), e);
         }
@@ -303,6 +265,30 @@ public class JdbcTemplate extends PostgresDriver {
         }
     }
 
+    // every row as a clazz, mapped by setters the way queryForSingleObject does
+    public <T> List<T> queryForList(String sql, Class<T> clazz, Object... params) {
+        try (
+                Connection conn = createConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> mapper = RowMapper.of(clazz, rs.getMetaData());
+                List<T> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+                return rows;
+            }
+
+        } catch (SQLException e) {
+            throw new PostgresDatabaseConnectionError(e.getMessage());
+        }
+    }
+
     // public <T> T queryForSingleObject(String sqlQuery, Class<T> clazz, Object...
     // params) throws Exception {
     // Connection conn = null;
@@ -444,9 +430,7 @@ public class JdbcTemplate extends PostgresDriver {
             conn = this.createConnection();
             conn.setAutoCommit(false);
             stmt = this.getPreparedStatement(sqlUpdate, conn);
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i], stmt.getParameterMetaData().getParameterType(i + 1));
-            }
+            bindTyped(stmt, sqlUpdate, params);
             var result = stmt.executeUpdate();
             if (result != 1) {
                 conn.rollback();
@@ -477,4 +461,213 @@ public class JdbcTemplate extends PostgresDriver {
         }
     }
 
+    // one row per params array, typed like updateOne(sql, params)
+    public int[] batchUpdate(String sqlUpdate, List<Object[]> rows) throws PostgresDatabaseConnectionError {
+        return batchUpdate(sqlUpdate, rows, (stmt, row) -> bindTyped(stmt, sqlUpdate, row));
+    }
+
+    // runs sqlUpdate once per item on one connection and in one transaction,
+    // jdbcBatchSize rows per round trip. Either every row is written or, if
+    // any fails, none is. The counts are per row in order, with
+    // reWriteBatchedInserts pgjdbc reports Statement.SUCCESS_NO_INFO for them
+    public <T> int[] batchUpdate(String sqlUpdate, Collection<T> items, StatementBinder<T> binder)
+            throws PostgresDatabaseConnectionError {
+        int batchSize = Math.max(1, this.manager.getConfig().getJdbcBatchSize());
+        int[] counts = new int[items.size()];
+        Connection conn = null;
+        java.sql.PreparedStatement stmt = null;
+        try {
+            conn = this.createConnection();
+            conn.setAutoCommit(false);
+            stmt = this.getPreparedStatement(sqlUpdate, conn);
+            int done = 0;
+            int pending = 0;
+            for (T item : items) {
+                binder.bind(stmt, item);
+                stmt.addBatch();
+                if (++pending == batchSize) {
+                    done = executeBatch(stmt, counts, done);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                executeBatch(stmt, counts, done);
+            }
+            conn.commit();
+            return counts;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            // pgjdbc puts the statement that actually failed in the next one
+            SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+            throw new PostgresDatabaseConnectionError(cause.getMessage());
+        } finally {
+            try {
+                if (stmt != null)
+                    stmt.close();
+                if (conn != null)
+                    conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static int executeBatch(PreparedStatement stmt, int[] counts, int offset) throws SQLException {
+        int[] batch = stmt.executeBatch();
+        System.arraycopy(batch, 0, counts, offset, Math.min(batch.length, counts.length - offset));
+        return offset + batch.length;
+    }
+
+    // COPY ... FROM STDIN (csv, text or binary, whatever copySql says), in is
+    // read to its end and sent on as it comes in, nothing is held in memory.
+    // Returns the rows loaded, if reading in or the COPY fails none are. An
+    // IOException comes from in
+    public long copyIn(String copySql, InputStream in) throws IOException {
+        try (Connection conn = this.createConnection()) {
+            return conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql, in, COPY_BUFFER_SIZE);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new PostgresDatabaseConnectionError(e.getMessage());
+        }
+    }
+
+    // COPY ... TO STDOUT, rows are written to out as the server sends them.
+    // Returns the rows exported, an IOException comes from out
+    public long copyOut(String copySql, OutputStream out) throws IOException {
+        try (Connection conn = this.createConnection()) {
+            return conn.unwrap(PGConnection.class).getCopyAPI().copyOut(copySql, out);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new PostgresDatabaseConnectionError(e.getMessage());
+        }
+    }
+
+    // every row as a clazz, read from the server jdbcFetchSize rows at a time
+    // as the stream is consumed, so a result of any size runs in constant
+    // memory. The stream holds a connection and a transaction until it is
+    // closed, use it in try-with-resources or hand it to
+    // Response.streamJsonArray, which closes it
+    public <T> Stream<T> queryForStream(String sql, Class<T> clazz, Object... params) {
+        return queryForStream(sql, null, clazz, params);
+    }
+
+    // the same with rowExtractor reading each row, it is called on the
+    // current row and must not move the result set
+    public <T> Stream<T> queryForStream(String sql, ResultSetExtractor<T> rowExtractor, Object... params) {
+        return queryForStream(sql, rowExtractor, null, params);
+    }
+
+    private <T> Stream<T> queryForStream(String sql, ResultSetExtractor<T> rowExtractor, Class<T> clazz,
+            Object... params) {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.createConnection();
+            // pgjdbc only fetches in batches inside a transaction, under
+            // autocommit it reads the whole result before returning
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(Math.max(1, this.manager.getConfig().getJdbcFetchSize()));
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            rs = stmt.executeQuery();
+            ResultSetExtractor<T> extractor = rowExtractor != null
+                    ? rowExtractor
+                    : RowMapper.of(clazz, rs.getMetaData())::map;
+            RowSpliterator<T> rows = new RowSpliterator<>(conn, stmt, rs, extractor);
+            return StreamSupport.stream(rows, false).onClose(rows::close);
+        } catch (SQLException | RuntimeException e) {
+            closeCursor(conn, stmt, rs);
+            if (e instanceof SQLException) {
+                e.printStackTrace();
+                throw new PostgresDatabaseConnectionError(e.getMessage());
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private static final class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final ResultSetExtractor<T> extractor;
+        private boolean closed;
+
+        RowSpliterator(Connection conn, PreparedStatement stmt, ResultSet rs, ResultSetExtractor<T> extractor) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    // the connection can go back before the stream is closed
+                    close();
+                    return false;
+                }
+                action.accept(extractor.extractData(rs));
+                return true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                close();
+                throw new PostgresDatabaseConnectionError(e.getMessage());
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                closeCursor(conn, stmt, rs);
+            }
+        }
+    }
+
+    // read only, the transaction only existed for the cursor. Every step
+    // gets its own try: a connection that broke mid-export fails the rollback,
+    // and it still has to go back to the pool
+    private static void closeCursor(Connection conn, PreparedStatement stmt, ResultSet rs) {
+        try {
+            if (rs != null)
+                rs.close();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        try {
+            if (stmt != null)
+                stmt.close();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.rollback();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
 }
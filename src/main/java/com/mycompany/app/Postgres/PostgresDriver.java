@@ -25,6 +25,16 @@ abstract public class PostgresDriver {
                 manager.getConfig().getJdbcPostgresDatabase()));
         this.hikariConfig.setUsername(manager.getConfig().getJdbcPostgresUser());
         this.hikariConfig.setPassword(manager.getConfig().getJdbcPostgresPassword());
+        // prepareStatement() with SQL a connection has seen before gets the
+        // server-side statement pgjdbc keeps for it, no parse/plan again
+        this.hikariConfig.addDataSourceProperty("prepareThreshold",
+                manager.getConfig().getJdbcPrepareThreshold());
+        this.hikariConfig.addDataSourceProperty("preparedStatementCacheQueries",
+                manager.getConfig().getJdbcPreparedStatementCacheQueries());
+        this.hikariConfig.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                manager.getConfig().getJdbcPreparedStatementCacheSizeMiB());
+        this.hikariConfig.addDataSourceProperty("reWriteBatchedInserts",
+                Boolean.TRUE.equals(manager.getConfig().getJdbcReWriteBatchedInserts()));
         this.dataSource = new HikariDataSource(this.hikariConfig);
         System.err.println("PostgresDriver initialized successfully");
         System.err.println("HikariCP DataSource created successfully");
@@ -0,0 +1,219 @@
+package com.mycompany.app.Postgres;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Turns rows into instances of a class through its setters. What the class has
+// is looked up once: its no-arg constructor and its setters by lowercased
+// property name, public or not, its own and inherited ones. For each column
+// layout a query comes back with (the labels in order) a mapper is then built
+// once that knows which setter every column goes to, and reads the column
+// with the getter matching the setter's type, getInt for an int and so on.
+// Mapping a row is a constructor call and a typed get and set per column,
+// nothing looked up by name and no boxing for the primitive ones. Columns
+// without a setter are skipped, a SQL NULL leaves a primitive property at its
+// default.
+final class RowMapper<T> {
+    private static final ConcurrentHashMap<Class<?>, Target> TARGETS = new ConcurrentHashMap<>();
+    // layouts kept per class, more than that and the rest are built per query
+    private static final int MAX_LAYOUTS = 64;
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @FunctionalInterface
+    private interface Column {
+        void apply(Object instance, ResultSet rs) throws Throwable;
+    }
+
+    private static final class Target {
+        private final MethodHandle constructor;
+        private final Map<String, Method> setters = new HashMap<>();
+        private final ConcurrentHashMap<String, RowMapper<?>> layouts = new ConcurrentHashMap<>();
+
+        Target(Class<?> type) {
+            try {
+                Constructor<?> noArgs = type.getDeclaredConstructor();
+                noArgs.trySetAccessible();
+                this.constructor = LOOKUP.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Failed to map result set to " + type.getName(), e);
+            }
+            // declared ones too, not only public: a setter can be private or
+            // package-private. A subclass's setter wins over the one it overrides
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    addSetter(method);
+                }
+            }
+            // default methods of interfaces
+            for (Method method : type.getMethods()) {
+                addSetter(method);
+            }
+        }
+
+        private void addSetter(Method method) {
+            if (!method.getName().startsWith("set") || method.getParameterCount() != 1
+                    || Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()) {
+                return;
+            }
+            String property = method.getName().substring(3).toLowerCase();
+            if (!setters.containsKey(property) && method.trySetAccessible()) {
+                setters.put(property, method);
+            }
+        }
+    }
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Column[] columns;
+
+    private RowMapper(Class<T> type, Target target, String[] labels) throws ReflectiveOperationException {
+        this.type = type;
+        this.constructor = target.constructor;
+        Column[] resolved = new Column[labels.length];
+        int count = 0;
+        for (int i = 0; i < labels.length; i++) {
+            Method setter = target.setters.get(labels[i].toLowerCase());
+            if (setter != null) {
+                resolved[count++] = column(i + 1, LOOKUP.unreflect(setter), setter.getParameterTypes()[0]);
+            }
+        }
+        this.columns = Arrays.copyOf(resolved, count);
+    }
+
+    // the mapper for rows of this result set's layout
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> of(Class<T> type, ResultSetMetaData meta) throws SQLException {
+        Target target = TARGETS.computeIfAbsent(type, Target::new);
+        String[] labels = new String[meta.getColumnCount()];
+        StringBuilder layout = new StringBuilder();
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+            layout.append(labels[i]).append('\0');
+        }
+        String key = layout.toString();
+        RowMapper<?> mapper = target.layouts.get(key);
+        if (mapper == null) {
+            try {
+                mapper = new RowMapper<>(type, target, labels);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Failed to map result set to " + type.getName(), e);
+            }
+            if (target.layouts.size() < MAX_LAYOUTS) {
+                target.layouts.putIfAbsent(key, mapper);
+            }
+        }
+        return (RowMapper<T>) mapper;
+    }
+
+    // the current row
+    T map(ResultSet rs) {
+        try {
+            Object instance = constructor.invokeExact();
+            for (Column column : columns) {
+                column.apply(instance, rs);
+            }
+            return type.cast(instance);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to map result set to " + type.getName(), e);
+        }
+    }
+
+    private static Column column(int index, MethodHandle setter, Class<?> type) {
+        if (type == int.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+            return (instance, rs) -> {
+                int value = rs.getInt(index);
+                if (!rs.wasNull()) {
+                    set.invokeExact(instance, value);
+                }
+            };
+        }
+        if (type == long.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+            return (instance, rs) -> {
+                long value = rs.getLong(index);
+                if (!rs.wasNull()) {
+                    set.invokeExact(instance, value);
+                }
+            };
+        }
+        if (type == double.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+            return (instance, rs) -> {
+                double value = rs.getDouble(index);
+                if (!rs.wasNull()) {
+                    set.invokeExact(instance, value);
+                }
+            };
+        }
+        if (type == boolean.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+            return (instance, rs) -> {
+                boolean value = rs.getBoolean(index);
+                if (!rs.wasNull()) {
+                    set.invokeExact(instance, value);
+                }
+            };
+        }
+        if (type == Integer.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Integer.class));
+            return (instance, rs) -> {
+                int value = rs.getInt(index);
+                set.invokeExact(instance, rs.wasNull() ? null : Integer.valueOf(value));
+            };
+        }
+        if (type == Long.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Long.class));
+            return (instance, rs) -> {
+                long value = rs.getLong(index);
+                set.invokeExact(instance, rs.wasNull() ? null : Long.valueOf(value));
+            };
+        }
+        if (type == Double.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Double.class));
+            return (instance, rs) -> {
+                double value = rs.getDouble(index);
+                set.invokeExact(instance, rs.wasNull() ? null : Double.valueOf(value));
+            };
+        }
+        if (type == Boolean.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Boolean.class));
+            return (instance, rs) -> {
+                boolean value = rs.getBoolean(index);
+                set.invokeExact(instance, rs.wasNull() ? null : Boolean.valueOf(value));
+            };
+        }
+        if (type == String.class) {
+            MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, String.class));
+            return (instance, rs) -> {
+                set.invokeExact(instance, rs.getString(index));
+            };
+        }
+        // anything else takes what the driver hands back, if it fits
+        MethodHandle set = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, rs) -> {
+            Object value = rs.getObject(index);
+            if (value == null && type.isPrimitive()) {
+                return;
+            }
+            if (value != null && !type.isInstance(value) && !type.isPrimitive()) {
+                throw new IllegalArgumentException("Unsupported conversion from " + value.getClass().getName()
+                        + " to " + type.getName());
+            }
+            set.invokeExact(instance, value);
+        };
+    }
+}
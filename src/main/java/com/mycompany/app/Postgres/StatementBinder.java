@@ -0,0 +1,6 @@
+package com.mycompany.app.Postgres;
+
+@FunctionalInterface
+public interface StatementBinder<T> {
+    public void bind(java.sql.PreparedStatement stmt, T item) throws java.sql.SQLException;
+}
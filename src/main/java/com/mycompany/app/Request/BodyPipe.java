@@ -0,0 +1,145 @@
+package com.mycompany.app.Request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+// Hands a request body from the connection to the handler a piece at a time,
+// never more than capacity bytes sit in between. On the selector transport the
+// reactor offers bytes and the handler thread waits for them, onDrain tells
+// the reactor it can read again once a full pipe has been drained. On the blocking
+// transport both ends are the handler thread, an empty pipe calls refill to
+// pull the next read off the socket.
+public class BodyPipe {
+    // reads more off the connection into the pipe, false on end of stream
+    @FunctionalInterface
+    public interface Refill {
+        boolean fill() throws IOException;
+    }
+
+    private final byte[] ring;
+    private final Refill refill;
+    private final Runnable onDrain;
+    private int start;
+    private int count;
+    private boolean finished;
+    private boolean writerBlocked;
+    private RuntimeException failure;
+    private IOException ioFailure;
+
+    private final InputStream stream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return take(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            synchronized (BodyPipe.this) {
+                return count;
+            }
+        }
+    };
+
+    public BodyPipe(int capacity, Refill refill, Runnable onDrain) {
+        this.ring = new byte[capacity];
+        this.refill = refill;
+        this.onDrain = onDrain;
+    }
+
+    public InputStream stream() {
+        return stream;
+    }
+
+    // copies as much of src as fits, returns how much that was
+    public synchronized int offer(byte[] src, int off, int len) {
+        int accepted = Math.min(len, ring.length - count);
+        int end = (start + count) % ring.length;
+        int first = Math.min(accepted, ring.length - end);
+        System.arraycopy(src, off, ring, end, first);
+        System.arraycopy(src, off + first, ring, 0, accepted - first);
+        count += accepted;
+        // an exactly full pipe also stops the reactor reading, so it needs the wake up too
+        if (count == ring.length) {
+            writerBlocked = true;
+        }
+        notifyAll();
+        return accepted;
+    }
+
+    public synchronized boolean isFull() {
+        return count == ring.length;
+    }
+
+    public synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    public synchronized void fail(RuntimeException error) {
+        failure = error;
+        notifyAll();
+    }
+
+    public synchronized void fail(IOException error) {
+        ioFailure = error;
+        notifyAll();
+    }
+
+    private int take(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int taken;
+        boolean drained = false;
+        synchronized (this) {
+            while (count == 0 && !finished) {
+                throwFailure();
+                if (refill != null) {
+                    if (!refill.fill()) {
+                        throw new IOException("Connection closed in the middle of the request body");
+                    }
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the request body");
+                    }
+                }
+            }
+            if (count == 0) {
+                return -1;
+            }
+            taken = Math.min(len, count);
+            int first = Math.min(taken, ring.length - start);
+            System.arraycopy(ring, start, b, off, first);
+            System.arraycopy(ring, 0, b, off + first, taken - first);
+            start = (start + taken) % ring.length;
+            count -= taken;
+            if (writerBlocked && count <= ring.length / 2) {
+                writerBlocked = false;
+                drained = true;
+            }
+        }
+        if (drained && onDrain != null) {
+            onDrain.run();
+        }
+        return taken;
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (ioFailure != null) {
+            throw ioFailure;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.mycompany.app.Request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.mycompany.app.Errors.HttpRequestError;
+
+// Single pass state machine over the raw request bytes. It only records
+// offsets (method, target, '?', version, every header name and value) plus the
+// framing headers it needs on the way, the strings are cut out lazily by
+// Request when somebody asks for them. Fed incrementally by RequestFramer, so
+// a head that arrives in pieces is never rescanned.
+public class HttpRequestParser {
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNKED = "chunked".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] KNOWN_METHODS = { "GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "PATCH" };
+
+    private enum State {
+        LINE_START, METHOD, TARGET, VERSION, VERSION_LF,
+        HEADER_START, HEADER_NAME, HEADER_VALUE_START, HEADER_VALUE, HEADER_LF, HEAD_LF, DONE
+    }
+
+    private State state = State.LINE_START;
+    private int position;
+
+    private int methodStart;
+    private int methodEnd;
+    private int targetStart;
+    private int targetEnd;
+    private int queryStart = -1;
+    private int versionStart;
+    private int versionEnd;
+    private int headEnd = -1;
+
+    // 4 ints per header: name start, name end, value start, value end
+    private int[] headers = new int[32];
+    private int headerCount;
+    private int nameStart;
+    private int nameEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    private long contentLength = -1;
+    // chunked is only true while chunked is the last coding seen so far
+    private boolean transferEncoding;
+    private boolean chunked;
+    private boolean otherCoding;
+
+    // returns the offset just past CRLFCRLF once the head is complete, -1 while
+    // more bytes are needed
+    public int parse(byte[] buf, int limit) {
+        while (state != State.DONE && position < limit) {
+            byte b = buf[position];
+            switch (state) {
+                case LINE_START -> {
+                    // tolerate stray CRLFs between keep-alive requests
+                    if (b != '\r' && b != '\n') {
+                        methodStart = position;
+                        state = State.METHOD;
+                        continue;
+                    }
+                }
+                case METHOD -> {
+                    if (b == ' ') {
+                        methodEnd = position;
+                        targetStart = position + 1;
+                        state = State.TARGET;
+                    } else if (b < 'A' || b > 'Z') {
+                        throw new HttpRequestError(400, "Malformed request line");
+                    }
+                }
+                case TARGET -> {
+                    if (b == ' ') {
+                        targetEnd = position;
+                        versionStart = position + 1;
+                        state = State.VERSION;
+                    } else if (b == '?' && queryStart == -1) {
+                        queryStart = position;
+                    } else if (b == '\r' || b == '\n') {
+                        throw new HttpRequestError(400, "Malformed request line");
+                    }
+                }
+                case VERSION -> {
+                    if (b == '\r') {
+                        versionEnd = position;
+                        state = State.VERSION_LF;
+                    } else if (b == '\n' || b == ' ') {
+                        throw new HttpRequestError(400, "Malformed request line");
+                    }
+                }
+                case VERSION_LF, HEADER_LF -> {
+                    expectLf(b);
+                    state = State.HEADER_START;
+                }
+                case HEADER_START -> {
+                    if (b == '\r') {
+                        state = State.HEAD_LF;
+                    } else {
+                        nameStart = position;
+                        state = State.HEADER_NAME;
+                        continue;
+                    }
+                }
+                case HEADER_NAME -> {
+                    if (b == ':') {
+                        nameEnd = position;
+                        if (nameEnd == nameStart) {
+                            throw new HttpRequestError(400, "Empty header name");
+                        }
+                        state = State.HEADER_VALUE_START;
+                    } else if (b == '\r' || b == '\n' || b == ' ' || b == '\t') {
+                        throw new HttpRequestError(400, "Malformed header line");
+                    }
+                }
+                case HEADER_VALUE_START -> {
+                    if (b != ' ' && b != '\t') {
+                        valueStart = position;
+                        valueEnd = position;
+                        state = State.HEADER_VALUE;
+                        continue;
+                    }
+                }
+                case HEADER_VALUE -> {
+                    if (b == '\r') {
+                        endHeader(buf);
+                        state = State.HEADER_LF;
+                    } else if (b != ' ' && b != '\t') {
+                        valueEnd = position + 1;
+                    }
+                }
+                case HEAD_LF -> {
+                    expectLf(b);
+                    checkTransferEncoding();
+                    headEnd = position + 1;
+                    state = State.DONE;
+                }
+                default -> {
+                }
+            }
+            position++;
+        }
+        return headEnd;
+    }
+
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    // how far into the buffer the parser got, RequestFramer uses it for the
+    // header size limit
+    public int getPosition() {
+        return position;
+    }
+
+    public int getHeadEnd() {
+        return headEnd;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    private void expectLf(byte b) {
+        if (b != '\n') {
+            throw new HttpRequestError(400, "Expected LF after CR");
+        }
+    }
+
+    private void endHeader(byte[] buf) {
+        if (headerCount * 4 == headers.length) {
+            headers = Arrays.copyOf(headers, headers.length * 2);
+        }
+        int index = headerCount * 4;
+        headers[index] = nameStart;
+        headers[index + 1] = nameEnd;
+        headers[index + 2] = valueStart;
+        headers[index + 3] = valueEnd;
+        headerCount++;
+
+        if (equalsIgnoreCase(buf, nameStart, nameEnd, CONTENT_LENGTH)) {
+            long value = parseContentLength(buf, valueStart, valueEnd);
+            // a repeat that disagrees leaves two ways to frame the body
+            if (contentLength != -1 && contentLength != value) {
+                throw new HttpRequestError(400, "Conflicting Content-Length headers");
+            }
+            contentLength = value;
+        } else if (equalsIgnoreCase(buf, nameStart, nameEnd, TRANSFER_ENCODING)) {
+            transferEncoding = true;
+            readCodings(buf, valueStart, valueEnd);
+        }
+    }
+
+    // Transfer-Encoding is a comma separated list, repeated headers continue
+    // it. The codings are applied in order so chunked has to come last, and
+    // only once.
+    private void readCodings(byte[] buf, int from, int to) {
+        int start = from;
+        while (start <= to) {
+            int end = start;
+            while (end < to && buf[end] != ',') {
+                end++;
+            }
+            int codingStart = start;
+            int codingEnd = end;
+            while (codingStart < codingEnd && (buf[codingStart] == ' ' || buf[codingStart] == '\t')) {
+                codingStart++;
+            }
+            while (codingEnd > codingStart && (buf[codingEnd - 1] == ' ' || buf[codingEnd - 1] == '\t')) {
+                codingEnd--;
+            }
+            if (codingStart < codingEnd) {
+                if (chunked) {
+                    throw new HttpRequestError(400, "chunked must be the final transfer coding");
+                }
+                if (equalsIgnoreCase(buf, codingStart, codingEnd, CHUNKED)) {
+                    chunked = true;
+                } else {
+                    otherCoding = true;
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    private void checkTransferEncoding() {
+        if (!transferEncoding) {
+            return;
+        }
+        if (!chunked) {
+            // without chunked last the body length can't be known
+            throw new HttpRequestError(400, "chunked must be the final transfer coding");
+        }
+        if (otherCoding) {
+            throw new HttpRequestError(501, "Unsupported transfer coding");
+        }
+    }
+
+    private static long parseContentLength(byte[] buf, int from, int to) {
+        if (from == to || to - from > 18) {
+            throw new HttpRequestError(400, "Invalid Content-Length header");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') {
+                throw new HttpRequestError(400, "Invalid Content-Length header");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    // accessors used by Request, buf is the array the request was parsed from
+
+    public String method(byte[] buf) {
+        int length = methodEnd - methodStart;
+        for (String known : KNOWN_METHODS) {
+            if (known.length() == length && regionMatches(buf, methodStart, known)) {
+                return known;
+            }
+        }
+        return ascii(buf, methodStart, methodEnd);
+    }
+
+    public String target(byte[] buf) {
+        return ascii(buf, targetStart, targetEnd);
+    }
+
+    public String pathOnly(byte[] buf) {
+        return ascii(buf, targetStart, queryStart == -1 ? targetEnd : queryStart);
+    }
+
+    // null when the target has no '?'
+    public String query(byte[] buf) {
+        return queryStart == -1 ? null : ascii(buf, queryStart + 1, targetEnd);
+    }
+
+    public String version(byte[] buf) {
+        return ascii(buf, versionStart, versionEnd);
+    }
+
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    public String headerName(byte[] buf, int index) {
+        return ascii(buf, headers[index * 4], headers[index * 4 + 1]);
+    }
+
+    public String headerValue(byte[] buf, int index) {
+        return ascii(buf, headers[index * 4 + 2], headers[index * 4 + 3]);
+    }
+
+    // case insensitive, -1 when the header is missing
+    public int indexOfHeader(byte[] buf, String name) {
+        for (int i = 0; i < headerCount; i++) {
+            int start = headers[i * 4];
+            int end = headers[i * 4 + 1];
+            if (end - start == name.length() && regionMatchesIgnoreCase(buf, start, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String ascii(byte[] buf, int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean regionMatches(byte[] buf, int from, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (buf[from + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatchesIgnoreCase(byte[] buf, int from, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (lower(buf[from + i]) != Character.toLowerCase(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] buf, int from, int to, byte[] lowerCase) {
+        if (to - from != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            if (lower(buf[from + i]) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
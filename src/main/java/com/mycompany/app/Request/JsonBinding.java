@@ -0,0 +1,60 @@
+package com.mycompany.app.Request;
+
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mycompany.app.Config.Json;
+
+import tools.jackson.databind.DatabindException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectReader;
+
+// What getBodyAsJson needs to know about a class, worked out the first time
+// it's asked for: the public fields marked @RequestParmaterRequired and a
+// reader bound to the class. The body is parsed once, straight into the
+// object when nothing is required. Otherwise it is read into a tree, which
+// tells a missing field from one that is there but null, and the object is
+// bound from that tree.
+class JsonBinding<T> {
+    private static final ConcurrentHashMap<Class<?>, JsonBinding<?>> BINDINGS = new ConcurrentHashMap<>();
+
+    private final ObjectReader reader;
+    private final String[] required;
+
+    private JsonBinding(Class<T> type) {
+        this.reader = Json.MAPPER.readerFor(type);
+        List<String> names = new ArrayList<>();
+        for (Field field : type.getFields()) {
+            if (field.isAnnotationPresent(RequestParmaterRequired.class)) {
+                names.add(field.getName());
+            }
+        }
+        this.required = names.toArray(new String[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> JsonBinding<T> of(Class<T> type) {
+        return (JsonBinding<T>) BINDINGS.computeIfAbsent(type, JsonBinding::new);
+    }
+
+    // null when a required field is missing or the JSON doesn't fit the class
+    T bind(InputStream body) {
+        try {
+            if (required.length == 0) {
+                return reader.readValue(body);
+            }
+            JsonNode tree = reader.readTree(body);
+            for (String name : required) {
+                if (!tree.has(name)) {
+                    return null;
+                }
+            }
+            return reader.readValue(tree);
+        } catch (DatabindException e) {
+            return null;
+        }
+    }
+}
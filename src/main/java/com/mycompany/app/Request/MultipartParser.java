@@ -0,0 +1,365 @@
+package com.mycompany.app.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Errors.HttpRequestError;
+import com.mycompany.app.sockets.BufferArena;
+
+// Reads a multipart/form-data body off a stream one part after the other. The
+// boundary is looked for with Boyer-Moore-Horspool over a fixed window, so the
+// body is never held as a whole: plain fields are kept in memory, file parts
+// go to a temp file once they grow past spillThreshold.
+public class MultipartParser {
+    private static final int WINDOW_SIZE = 16 * 1024;
+    private static final int MAX_PART_HEADER_SIZE = 8 * 1024;
+    private static final int MAX_BOUNDARY_LENGTH = 70;
+
+    private final InputStream in;
+    // CRLF "--" boundary, what separates one part from the next
+    private final byte[] delimiter;
+    // how far the search may jump for each byte found under the delimiter's
+    // last position
+    private final int[] shift = new int[256];
+
+    private final int spillThreshold;
+    private final int maxFieldSize;
+    private final long maxFileSize;
+    private final int maxParts;
+    private final Path tempDir;
+
+    // borrowed from BufferArena for the length of parse()
+    private byte[] window;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    public MultipartParser(InputStream in, String boundary, Configuration config) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > MAX_BOUNDARY_LENGTH) {
+            throw new HttpRequestError(400, "Invalid multipart boundary");
+        }
+        this.in = in;
+        this.spillThreshold = config.getMultipartSpillThreshold();
+        this.maxFieldSize = config.getMaxMultipartFieldSize();
+        this.maxFileSize = config.getMaxMultipartFileSize();
+        this.maxParts = config.getMaxMultipartParts();
+        this.tempDir = config.getMultipartTempDir() == null ? null : Path.of(config.getMultipartTempDir());
+
+        byte[] boundaryBytes = boundary.getBytes(StandardCharsets.ISO_8859_1);
+        delimiter = new byte[boundaryBytes.length + 4];
+        delimiter[0] = '\r';
+        delimiter[1] = '\n';
+        delimiter[2] = '-';
+        delimiter[3] = '-';
+        System.arraycopy(boundaryBytes, 0, delimiter, 4, boundaryBytes.length);
+
+        Arrays.fill(shift, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            shift[delimiter[i] & 0xff] = delimiter.length - 1 - i;
+        }
+    }
+
+    // reads the whole body, any temp files made so far are deleted if it fails
+    public List<Part> parse() throws IOException {
+        List<Part> parts = new ArrayList<>();
+        // the body opens with "--boundary" and not CRLF "--boundary", pretend
+        // the CRLF was there so the first boundary is found like the others
+        window = BufferArena.acquireArray(WINDOW_SIZE);
+        window[0] = '\r';
+        window[1] = '\n';
+        pos = 0;
+        limit = 2;
+        try {
+            // whatever comes before the first boundary is preamble
+            readUntilDelimiter(null);
+            while (nextPartFollows()) {
+                if (parts.size() == maxParts) {
+                    throw new HttpRequestError(413, "More than " + maxParts + " parts in multipart body");
+                }
+                parts.add(readPart());
+            }
+            return parts;
+        } catch (IOException | RuntimeException e) {
+            for (Part part : parts) {
+                part.delete();
+            }
+            throw e;
+        } finally {
+            BufferArena.release(window);
+            window = null;
+        }
+    }
+
+    private Part readPart() throws IOException {
+        HashMap<String, String> headers = readHeaders();
+        String disposition = null;
+        String contentType = null;
+        for (var entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase("Content-Disposition")) {
+                disposition = entry.getValue();
+            } else if (entry.getKey().equalsIgnoreCase("Content-Type")) {
+                contentType = entry.getValue();
+            }
+        }
+        HashMap<String, String> params = dispositionParams(disposition);
+        String name = params.get("name");
+        if (name == null) {
+            throw new HttpRequestError(400, "Multipart part without a name");
+        }
+        String filename = params.get("filename");
+
+        PartSink sink = new PartSink(filename != null);
+        try {
+            readUntilDelimiter(sink);
+            return sink.finish(name, filename, contentType, headers);
+        } catch (IOException | RuntimeException e) {
+            sink.abort();
+            throw e;
+        }
+    }
+
+    // what follows a boundary: "--" closes the body, CRLF starts another part,
+    // spaces and tabs in between are allowed padding
+    private boolean nextPartFollows() throws IOException {
+        while (true) {
+            if (!ensure(2)) {
+                throw new HttpRequestError(400, "Multipart body ended after a boundary");
+            }
+            byte first = window[pos];
+            byte second = window[pos + 1];
+            if (first == '-' && second == '-') {
+                pos += 2;
+                return false;
+            }
+            if (first == '\r' && second == '\n') {
+                pos += 2;
+                return true;
+            }
+            if (first != ' ' && first != '\t') {
+                throw new HttpRequestError(400, "Malformed multipart boundary line");
+            }
+            pos++;
+        }
+    }
+
+    private HashMap<String, String> readHeaders() throws IOException {
+        HashMap<String, String> headers = new HashMap<>();
+        int budget = MAX_PART_HEADER_SIZE;
+        while (true) {
+            // findLineEnd() may move the window, the line starts at pos after it
+            int lineEnd = findLineEnd(budget);
+            int lineStart = pos;
+            int length = lineEnd - lineStart;
+            pos = lineEnd + 1;
+            if (length > 0 && window[lineEnd - 1] == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                return headers;
+            }
+            budget -= lineEnd + 1 - lineStart;
+            String line = new String(window, lineStart, length, StandardCharsets.UTF_8);
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new HttpRequestError(400, "Malformed multipart part header");
+            }
+            headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+    }
+
+    // index of the next LF, with the line starting at pos
+    private int findLineEnd(int budget) throws IOException {
+        int scanned = 0;
+        while (true) {
+            for (int i = pos + scanned; i < limit; i++) {
+                if (window[i] == '\n') {
+                    return i;
+                }
+            }
+            scanned = limit - pos;
+            if (scanned > budget) {
+                throw new HttpRequestError(400, "Multipart part headers larger than " + MAX_PART_HEADER_SIZE + " bytes");
+            }
+            if (eof) {
+                throw new HttpRequestError(400, "Multipart body ended inside part headers");
+            }
+            fill();
+        }
+    }
+
+    // hands everything up to the next delimiter to sink (null drops it) and
+    // moves past the delimiter
+    private void readUntilDelimiter(PartSink sink) throws IOException {
+        int length = delimiter.length;
+        while (true) {
+            int match = indexOfDelimiter();
+            if (match != -1) {
+                if (sink != null) {
+                    sink.write(window, pos, match - pos);
+                }
+                pos = match + length;
+                return;
+            }
+            if (eof) {
+                throw new HttpRequestError(400, "Multipart body ended before the closing boundary");
+            }
+            // the last length - 1 bytes could be the start of a delimiter,
+            // they stay in the window for the next round
+            int safe = limit - length + 1;
+            if (safe > pos) {
+                if (sink != null) {
+                    sink.write(window, pos, safe - pos);
+                }
+                pos = safe;
+            }
+            fill();
+        }
+    }
+
+    // Boyer-Moore-Horspool over window[pos, limit)
+    private int indexOfDelimiter() {
+        int last = delimiter.length - 1;
+        int i = pos;
+        while (i + last < limit) {
+            int j = last;
+            while (window[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shift[window[i + last] & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean ensure(int count) throws IOException {
+        while (limit - pos < count && !eof) {
+            fill();
+        }
+        return limit - pos >= count;
+    }
+
+    // moves what is left to the front of the window and reads more after it
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(window, pos, window, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int read = in.read(window, limit, window.length - limit);
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    // form-data; name="a"; filename="b;c.txt" -> {name=a, filename=b;c.txt}
+    static HashMap<String, String> dispositionParams(String value) {
+        HashMap<String, String> params = new HashMap<>();
+        if (value == null) {
+            return params;
+        }
+        int length = value.length();
+        int i = value.indexOf(';');
+        while (i != -1 && i < length) {
+            int equals = value.indexOf('=', i + 1);
+            if (equals == -1) {
+                break;
+            }
+            String key = value.substring(i + 1, equals).trim().toLowerCase();
+            i = equals + 1;
+            while (i < length && value.charAt(i) == ' ') {
+                i++;
+            }
+            String param;
+            if (i < length && value.charAt(i) == '"') {
+                // browsers don't escape inside the quotes, the next quote ends it
+                int close = value.indexOf('"', i + 1);
+                if (close == -1) {
+                    close = length;
+                }
+                param = value.substring(i + 1, close);
+                i = value.indexOf(';', close);
+            } else {
+                int end = value.indexOf(';', i);
+                param = value.substring(i, end == -1 ? length : end).trim();
+                i = end;
+            }
+            params.put(key, param);
+        }
+        return params;
+    }
+
+    // collects one part's content, in memory until a file part passes
+    // spillThreshold
+    private final class PartSink {
+        private final boolean file;
+        private final long max;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path path;
+        private OutputStream out;
+        private long size;
+
+        PartSink(boolean file) {
+            this.file = file;
+            this.max = file ? maxFileSize : maxFieldSize;
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            size += length;
+            if (size > max) {
+                throw new HttpRequestError(413, (file ? "File" : "Field") + " part larger than " + max + " bytes");
+            }
+            if (out == null && file && size > spillThreshold) {
+                path = tempDir == null ? Files.createTempFile("upload-", ".part")
+                        : Files.createTempFile(tempDir, "upload-", ".part");
+                out = Files.newOutputStream(path);
+                memory.writeTo(out);
+                memory = null;
+            }
+            if (out != null) {
+                out.write(bytes, offset, length);
+            } else {
+                memory.write(bytes, offset, length);
+            }
+        }
+
+        Part finish(String name, String filename, String contentType, HashMap<String, String> headers)
+                throws IOException {
+            if (out != null) {
+                out.close();
+                return new Part(name, filename, contentType, headers, null, path, size);
+            }
+            return new Part(name, filename, contentType, headers, memory.toByteArray(), null, size);
+        }
+
+        void abort() {
+            if (path == null) {
+                return;
+            }
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Could not delete upload " + path + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mycompany.app.Request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+// One part of a multipart/form-data body. Small parts keep their content in
+// memory, big file uploads sit in a temp file that goes away once the request
+// is done, unless the handler moved it somewhere with saveTo().
+@Getter
+public class Part {
+    private final String name;
+    // null for plain form fields
+    private final String filename;
+    private final String contentType;
+    private final HashMap<String, String> headers;
+    private final long size;
+
+    @Getter(AccessLevel.NONE)
+    private final byte[] data;
+    // where a spilled part lives, null while it is in memory
+    @Getter(AccessLevel.NONE)
+    private Path file;
+    @Getter(AccessLevel.NONE)
+    private boolean saved;
+
+    Part(String name, String filename, String contentType, HashMap<String, String> headers,
+            byte[] data, Path file, long size) {
+        this.name = name;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.data = data;
+        this.file = file;
+        this.size = size;
+    }
+
+    // header names are case insensitive
+    public String getHeader(String header) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(header)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public boolean isFile() {
+        return filename != null;
+    }
+
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return file == null ? new ByteArrayInputStream(data) : Files.newInputStream(file);
+    }
+
+    // the whole content in memory, reads a spilled part back from disk
+    public byte[] getBytes() {
+        if (file == null) {
+            return data;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getString() {
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    // keeps the upload at target, a spilled part is moved there instead of copied
+    public void saveTo(Path target) throws IOException {
+        if (file == null) {
+            Files.write(target, data);
+            return;
+        }
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        file = target;
+        saved = true;
+    }
+
+    // drops the temp file, nothing to do for in memory or saved parts
+    public void delete() {
+        if (file == null || saved) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete upload " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.mycompany.app.Request;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -11,12 +14,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.function.BiFunction;
 
-import com.mycompany.app.Handlers.FileParser;
+import com.mycompany.app.Errors.HttpRequestError;
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Config.Json;
+import com.mycompany.app.sockets.BufferArena;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import tools.jackson.databind.DatabindException;
 import tools.jackson.databind.JsonNode;
-import tools.jackson.databind.ObjectMapper;
 
 @Getter
 public class Request {
@@ -29,30 +35,370 @@ public class Request {
     HashMap<String, String> headers;
     HashMap<String, String> cookies;
     HashMap<String, String> routeParameters;
+    // bound by the route tree while matching, see HttpDriver
+    @Getter(AccessLevel.NONE)
+    RouteParams routeParams;
 
     HashMap<String, String> File;
 
+    // multipart/form-data parts, read off the body the first time they are
+    // asked for
+    List<Part> parts;
+
+    // the raw bytes and the offsets HttpRequestParser found in them, the
+    // fields above get cut out of these the first time somebody asks.
+    // Requests filled in by the old RequestParser pipeline have neither.
+    @Getter(AccessLevel.NONE)
+    byte[] raw;
+    @Getter(AccessLevel.NONE)
+    HttpRequestParser head;
+
+    // set when the body is streamed off the connection instead of sitting
+    // in raw after the head, bodyBytes once somebody asked for all of it
+    @Getter(AccessLevel.NONE)
+    BodyPipe bodyPipe;
+    @Getter(AccessLevel.NONE)
+    byte[] bodyBytes;
+
+    // for the RequestParser pipeline
+    Request() {
+    }
+
+    public Request(InputStream stream) throws IOException {
+        this(readOne(stream));
+    }
+
+    // a complete request already framed by the caller
+    public Request(byte[] raw) {
+        this(raw, parseHead(raw));
+    }
+
+    // raw was already run through head, see RequestFramer
+    Request(byte[] raw, HttpRequestParser head) {
+        this.raw = raw;
+        this.head = head;
+    }
+
+    // the body follows through bodyPipe, raw only holds the head
+    Request(byte[] raw, HttpRequestParser head, BodyPipe bodyPipe) {
+        this(raw, head);
+        this.bodyPipe = bodyPipe;
+    }
+
+    private Request(Request framed) {
+        this(framed.raw, framed.head, framed.bodyPipe);
+    }
+
+    private static Request readOne(InputStream stream) throws IOException {
+        Request request = new RequestReader(stream).next();
+        if (request == null) {
+            throw new EOFException("Connection closed before a request was sent");
+        }
+        return request;
+    }
+
+    private static HttpRequestParser parseHead(byte[] raw) {
+        HttpRequestParser parser = new HttpRequestParser();
+        if (parser.parse(raw, raw.length) == -1) {
+            throw new HttpRequestError(400, "Incomplete request head");
+        }
+        return parser;
+    }
+
     public String getMethod() {
-        return coreData.get("method");
+        return head != null ? head.method(raw) : coreData.get("method");
     }
 
+    // the full request target, query string included
     public String getPath() {
-        return coreData.get("path");
+        return head != null ? head.target(raw) : coreData.get("path");
+    }
+
+    // whatever follows the '?', null when there is none
+    public String getQuery() {
+        if (head != null) {
+            return head.query(raw);
+        }
+        String path = getPath();
+        int index = path.indexOf('?');
+        return index == -1 ? null : path.substring(index + 1);
     }
 
     public String httpType() {
-        return coreData.get("http");
+        return head != null ? head.version(raw) : coreData.get("http");
     }
 
+    // header names are case insensitive
     public String getHeader(String header) {
-        return headers.get(header);
+        if (head == null) {
+            return headers.get(header);
+        }
+        int index = head.indexOfHeader(raw, header);
+        return index == -1 ? null : head.headerValue(raw, index);
     }
 
-    public Request(InputStream stream) throws IOException {
-        request = processBody(stream);
-        Request.requestPropertiesAssigner(request, this);
-        if (contentType != null && contentType.get("Content-Type").equals("multipart/form-data")) {
-            File = FileParser.parseMultipartFormData(requestBody, contentType.get("boundary"));
+    // HTTP/1.1 keeps the connection open unless the client says close,
+    // HTTP/1.0 only when it asks for keep-alive
+    public boolean isKeepAlive() {
+        String connection = getHeader("Connection");
+        if ("HTTP/1.0".equals(httpType())) {
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        }
+        return connection == null || !connection.equalsIgnoreCase("close");
+    }
+
+    public String getRequest() {
+        if (request == null && raw != null) {
+            request = bodyPipe == null ? new String(raw, StandardCharsets.UTF_8)
+                    : new String(raw, StandardCharsets.UTF_8) + getRequestBody();
+        }
+        return request;
+    }
+
+    // decoded lazily, prefer getBodyBytes()/getBodyStream() for anything that
+    // isn't text
+    public String getRequestBody() {
+        if (requestBody == null && raw != null) {
+            if (bodyPipe == null && bodyBytes == null) {
+                int bodyStart = head.getHeadEnd();
+                requestBody = new String(raw, bodyStart, raw.length - bodyStart, StandardCharsets.UTF_8);
+            } else {
+                requestBody = new String(getBodyBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return requestBody;
+    }
+
+    // Content-Length of the request, -1 for chunked bodies
+    public long getContentLength() {
+        if (head == null) {
+            return getRequestBody().getBytes(StandardCharsets.UTF_8).length;
+        }
+        return head.isChunked() ? -1 : Math.max(0, head.getContentLength());
+    }
+
+    // the whole body in memory, for a streamed one this reads the rest of it
+    // off the connection
+    public byte[] getBodyBytes() {
+        if (bodyBytes == null) {
+            if (bodyPipe != null) {
+                try {
+                    bodyBytes = bodyPipe.stream().readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                bodyPipe = null;
+            } else if (raw != null) {
+                bodyBytes = Arrays.copyOfRange(raw, head.getHeadEnd(), raw.length);
+            } else {
+                bodyBytes = getRequestBody().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return bodyBytes;
+    }
+
+    // the body as it comes off the connection, bodies above
+    // requestBodyStreamThreshold never sit in memory as a whole this way.
+    // Can only be read through once.
+    public InputStream getBodyStream() {
+        if (bodyPipe != null) {
+            return bodyPipe.stream();
+        }
+        if (bodyBytes == null && raw != null) {
+            int bodyStart = head.getHeadEnd();
+            return new ByteArrayInputStream(raw, bodyStart, raw.length - bodyStart);
+        }
+        return new ByteArrayInputStream(getBodyBytes());
+    }
+
+    public ReadableByteChannel getBodyChannel() {
+        return Channels.newChannel(getBodyStream());
+    }
+
+    // whether the body is still being read off the connection
+    public boolean isBodyStreamed() {
+        return bodyPipe != null;
+    }
+
+    // Reads and drops whatever the handler left of a streamed body so the
+    // next request on the connection starts at the right byte. Returns false
+    // if more than limit bytes were left, the connection had better be closed
+    // than read through all of that.
+    public boolean discardBody(long limit) {
+        if (bodyPipe == null) {
+            return true;
+        }
+        byte[] scratch = BufferArena.acquireArray(8192);
+        try (InputStream stream = bodyPipe.stream()) {
+            long skipped = 0;
+            int read;
+            while ((read = stream.read(scratch)) != -1) {
+                skipped += read;
+                if (skipped > limit) {
+                    return false;
+                }
+            }
+            bodyPipe = null;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        } finally {
+            BufferArena.release(scratch);
+        }
+    }
+
+    public HashMap<String, String> getCoreData() {
+        if (coreData == null && head != null) {
+            coreData = new HashMap<>();
+            coreData.put("method", getMethod());
+            coreData.put("path", getPath());
+            coreData.put("http", httpType());
+        }
+        return coreData;
+    }
+
+    public HashMap<String, String> getHeaders() {
+        if (headers == null && head != null) {
+            headers = new HashMap<>();
+            for (int i = 0; i < head.getHeaderCount(); i++) {
+                headers.put(head.headerName(raw, i), head.headerValue(raw, i));
+            }
+        }
+        return headers;
+    }
+
+    public HashMap<String, String> getParams() {
+        if (params == null && head != null) {
+            params = new HashMap<>();
+            String query = head.query(raw);
+            if (query != null) {
+                splitPairs(query, '&', params);
+            }
+        }
+        return params;
+    }
+
+    public HashMap<String, String> getCookies() {
+        if (cookies == null && head != null) {
+            cookies = new HashMap<>();
+            String cookieHeader = getHeader("Cookie");
+            if (cookieHeader != null) {
+                splitPairs(cookieHeader, ';', cookies);
+            }
+        }
+        return cookies;
+    }
+
+    // {"Content-Type": media type, "boundary": ...} or null without the header
+    public HashMap<String, String> getContentType() {
+        if (contentType == null && head != null) {
+            String header = getHeader("Content-Type");
+            if (header == null || header.isBlank()) {
+                return null;
+            }
+            HashMap<String, String> result = new HashMap<>();
+            String[] parts = header.split(";");
+            result.put("Content-Type", parts[0].trim());
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                if (part.startsWith("boundary=")) {
+                    result.put("boundary", part.substring("boundary=".length()).replace("\"", ""));
+                }
+            }
+            if (result.get("Content-Type").equals("multipart/form-data") && !result.containsKey("boundary")) {
+                throw new HttpRequestError(400, "Boundary not found in Content-Type header");
+            }
+            contentType = result;
+        }
+        return contentType;
+    }
+
+    public void setRouteParams(RouteParams routeParams) {
+        this.routeParams = routeParams;
+        this.routeParameters = null;
+    }
+
+    // empty for requests that didn't go through a route with :params
+    public RouteParams getRouteParams() {
+        return routeParams != null ? routeParams : RouteParams.EMPTY;
+    }
+
+    public String getRouteParam(String name) {
+        return getRouteParams().get(name);
+    }
+
+    // route params as a map, getRouteParams() skips building it
+    public HashMap<String, String> getRouteParameters() {
+        if (routeParameters == null && (routeParams != null || head != null)) {
+            routeParameters = getRouteParams().toMap();
+        }
+        return routeParameters;
+    }
+
+    // the parts of a multipart/form-data body, empty for any other body
+    public List<Part> getParts() {
+        if (parts == null) {
+            HashMap<String, String> type = getContentType();
+            if (type == null || !type.get("Content-Type").equalsIgnoreCase("multipart/form-data")) {
+                parts = List.of();
+            } else {
+                Configuration config = ConfigurationManager.getInstance().getConfig();
+                try {
+                    parts = new MultipartParser(getBodyStream(), type.get("boundary"),
+                            config != null ? config : new Configuration()).parse();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return parts;
+    }
+
+    public Part getPart(String name) {
+        for (Part part : getParts()) {
+            if (part.getName().equals(name)) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    // temp files of spilled uploads only live as long as the request
+    public void deleteParts() {
+        if (parts != null) {
+            for (Part part : parts) {
+                part.delete();
+            }
+        }
+    }
+
+    // name -> content of every part, reads spilled uploads back into memory,
+    // getParts() is the way to go for files
+    public HashMap<String, String> getFile() {
+        if (File == null) {
+            List<Part> all = getParts();
+            if (!all.isEmpty()) {
+                File = new HashMap<>();
+                for (Part part : all) {
+                    File.put(part.getName(), part.getString());
+                }
+            }
+        }
+        return File;
+    }
+
+    private static void splitPairs(String value, char separator, HashMap<String, String> into) {
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(separator, start);
+            if (end == -1) {
+                end = value.length();
+            }
+            int equals = value.indexOf('=', start);
+            if (equals != -1 && equals < end) {
+                into.put(value.substring(start, equals).trim(), value.substring(equals + 1, end).trim());
+            }
+            start = end + 1;
         }
     }
 
@@ -68,55 +414,28 @@ public class Request {
     }
 
     public JsonNode getBodyAsJson() {
-        ObjectMapper om = new ObjectMapper();
-        return om.readTree(requestBody);
+        return Json.MAPPER.readTree(jsonBody());
     }
 
+    // null when the body is missing a @RequestParmaterRequired field or
+    // doesn't fit clazz
     public <T> T getBodyAsJson(Class<T> clazz) {
+        return JsonBinding.of(clazz).bind(jsonBody());
+    }
 
-        Field[] fields = clazz.getFields();
-        // This checks for the RequestParameterRequired annotation
-        // should have just used jackson annotations but too late now
-        for (Field field : fields) {
-            Annotation[] annotations = field.getAnnotations();
-            for (Annotation annotation : annotations) {
-                if (annotation instanceof RequestParmaterRequired) {
-                    ObjectMapper om = new ObjectMapper();
-                    try {
-                        JsonNode jsonNode = om.readTree(requestBody);
-                        if (!jsonNode.has(field.getName())) {
-                            return null;
-                        }
-                    } catch (DatabindException e) {
-                        return null;
-                    }
-                }
-            }
-        }
-        try {
-            ObjectMapper om = new ObjectMapper();
-            return om.readValue(requestBody, clazz);
-        } catch (DatabindException e) {
-            return null;
+    // the body for the JSON parser without copying it or decoding a String
+    // first. A streamed body is read in whole so it can still be read after
+    private InputStream jsonBody() {
+        if (bodyPipe != null) {
+            getBodyBytes();
         }
+        return getBodyStream();
     }
 
+    // reads exactly one request off the stream, framed by Content-Length or
+    // chunked encoding instead of waiting for the client to go quiet
     public String processBody(InputStream stream) throws IOException {
-
-        // I hate this method
-
-        StringBuilder sb = new StringBuilder();
-        byte[] buffer = new byte[4096];
-
-        try {
-            int read;
-            while ((read = stream.read(buffer)) != -1) {
-                sb.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
-            }
-        } catch (IOException e) {
-        }
-
-        return sb.toString();
+        return readOne(stream).getRequest();
     }
 
     public static void requestPropertiesAssigner(String request, Request requestObject) {
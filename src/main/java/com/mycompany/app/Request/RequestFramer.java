@@ -0,0 +1,283 @@
+package com.mycompany.app.Request;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.mycompany.app.Errors.HttpRequestError;
+
+// Collects the bytes coming off a connection and tells when a request can be
+// handed on. The head goes through HttpRequestParser as the bytes come in, so
+// it is parsed exactly once and slow clients that send a few bytes at a time
+// don't get it rescanned.
+//
+// A Content-Length body up to streamThreshold is buffered and the request only
+// shows up once all of it is there. Bigger bodies and chunked ones don't wait:
+// the request is handed on as soon as the head is complete and pump() moves
+// the body (dechunked) into the request's BodyPipe as it arrives.
+public class RequestFramer {
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_STREAM_THRESHOLD = 64 * 1024;
+
+    private static final int MAX_CHUNK_LINE = 1024;
+
+    private enum ChunkState {
+        SIZE, DATA, DATA_END, TRAILER, DONE
+    }
+
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final int streamThreshold;
+    private BodyPipe.Refill refill;
+    private Runnable onDrain;
+
+    private byte[] buffer = new byte[0];
+    private int size;
+    private HttpRequestParser parser = new HttpRequestParser();
+    private int headEnd = -1;
+    private int contentLength;
+
+    // the body currently being streamed, null while reading heads
+    private BodyPipe pipe;
+    private boolean chunked;
+    private long bodyRemaining;
+    private long bodyReceived;
+    private ChunkState chunkState;
+    private int chunkRemaining;
+
+    public RequestFramer() {
+        this(DEFAULT_MAX_HEADER_SIZE, DEFAULT_MAX_BODY_SIZE, DEFAULT_STREAM_THRESHOLD);
+    }
+
+    public RequestFramer(int maxHeaderSize, int maxBodySize, int streamThreshold) {
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.streamThreshold = streamThreshold;
+    }
+
+    // blocking transports: how a streamed body pulls more bytes off the socket
+    public void setRefill(BodyPipe.Refill refill) {
+        this.refill = refill;
+    }
+
+    // selector transport: called once a full pipe has room again
+    public void setOnDrain(Runnable onDrain) {
+        this.onDrain = onDrain;
+    }
+
+    public void append(ByteBuffer src) {
+        int length = src.remaining();
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size + length, Math.max(1024, buffer.length * 2)));
+        }
+        src.get(buffer, size, length);
+        size += length;
+    }
+
+    public boolean hasRequest() {
+        if (pipe != null) {
+            // the previous request's body hasn't been read off the wire yet
+            pump();
+            if (pipe != null) {
+                return false;
+            }
+        }
+        if (headEnd == -1) {
+            headEnd = parser.parse(buffer, Math.min(size, maxHeaderSize + 1));
+            if (headEnd == -1) {
+                if (parser.getPosition() > maxHeaderSize) {
+                    throw new HttpRequestError(431, "Request head larger than " + maxHeaderSize + " bytes");
+                }
+                return false;
+            }
+            if (parser.isChunked() && parser.getContentLength() != -1) {
+                // both framings at once is how requests get smuggled past a
+                // proxy that picks the other one, RFC 9112 6.3 says reject it
+                throw new HttpRequestError(400, "Request has both Transfer-Encoding and Content-Length");
+            } else if (parser.isChunked()) {
+                chunked = true;
+            } else if (parser.getContentLength() > maxBodySize) {
+                throw new HttpRequestError(413, "Request body larger than " + maxBodySize + " bytes");
+            } else {
+                contentLength = (int) Math.max(0, parser.getContentLength());
+            }
+        }
+        return chunked || contentLength > streamThreshold || size - headEnd >= contentLength;
+    }
+
+    // only valid after hasRequest() returned true, anything after the request
+    // (a pipelined one) stays buffered
+    public Request takeRequest() {
+        Request request;
+        int consumed;
+        if (chunked || contentLength > streamThreshold) {
+            pipe = new BodyPipe(streamThreshold, refill, onDrain);
+            bodyRemaining = contentLength;
+            bodyReceived = 0;
+            chunkState = ChunkState.SIZE;
+            consumed = headEnd;
+            request = new Request(Arrays.copyOf(buffer, headEnd), parser, pipe);
+        } else {
+            consumed = headEnd + contentLength;
+            request = new Request(Arrays.copyOf(buffer, consumed), parser);
+        }
+        consume(consumed);
+        parser = new HttpRequestParser();
+        headEnd = -1;
+        contentLength = 0;
+        if (pipe != null) {
+            pump();
+        } else {
+            chunked = false;
+        }
+        return request;
+    }
+
+    // moves buffered body bytes into the pipe, returns how many were consumed
+    public int pump() {
+        if (pipe == null) {
+            return 0;
+        }
+        try {
+            int before = size;
+            if (chunked) {
+                decodeChunks();
+            } else {
+                int accepted = pipe.offer(buffer, 0, (int) Math.min(size, bodyRemaining));
+                consume(accepted);
+                bodyRemaining -= accepted;
+                if (bodyRemaining == 0) {
+                    endBody();
+                }
+            }
+            return before - size;
+        } catch (HttpRequestError e) {
+            pipe.fail(e);
+            throw e;
+        }
+    }
+
+    public boolean isStreamingBody() {
+        return pipe != null;
+    }
+
+    // the pipe is full, stop reading until the handler catches up
+    public boolean isBodyBlocked() {
+        return pipe != null && pipe.isFull();
+    }
+
+    // the connection is going away, a handler still reading the body gets an
+    // IOException instead of waiting forever
+    public void abort(IOException reason) {
+        if (pipe != null) {
+            pipe.fail(reason);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0 && pipe == null;
+    }
+
+    private void endBody() {
+        pipe.finish();
+        pipe = null;
+        chunked = false;
+    }
+
+    private void consume(int count) {
+        System.arraycopy(buffer, count, buffer, 0, size - count);
+        size -= count;
+    }
+
+    // decodes as much of the buffered chunked body as the pipe takes
+    private void decodeChunks() {
+        while (pipe != null) {
+            switch (chunkState) {
+                case SIZE -> {
+                    int lineEnd = findLineEnd(0);
+                    if (lineEnd == -1) {
+                        if (size > MAX_CHUNK_LINE) {
+                            throw new HttpRequestError(400, "Invalid chunk size");
+                        }
+                        return;
+                    }
+                    chunkRemaining = parseChunkSize(0, lineEnd);
+                    consume(lineEnd + 2);
+                    chunkState = chunkRemaining == 0 ? ChunkState.TRAILER : ChunkState.DATA;
+                }
+                case DATA -> {
+                    int available = Math.min(chunkRemaining, size);
+                    if (available == 0) {
+                        return;
+                    }
+                    int accepted = pipe.offer(buffer, 0, available);
+                    consume(accepted);
+                    bodyReceived += accepted;
+                    chunkRemaining -= accepted;
+                    if (chunkRemaining == 0) {
+                        chunkState = ChunkState.DATA_END;
+                    } else if (accepted < available) {
+                        return;
+                    }
+                }
+                case DATA_END -> {
+                    if (size < 2) {
+                        return;
+                    }
+                    if (buffer[0] != '\r' || buffer[1] != '\n') {
+                        throw new HttpRequestError(400, "Malformed chunked body");
+                    }
+                    consume(2);
+                    chunkState = ChunkState.SIZE;
+                }
+                case TRAILER -> {
+                    // trailer fields are dropped, an empty line ends the body
+                    int lineEnd = findLineEnd(0);
+                    if (lineEnd == -1) {
+                        if (size > maxHeaderSize) {
+                            throw new HttpRequestError(431, "Chunked trailers larger than " + maxHeaderSize + " bytes");
+                        }
+                        return;
+                    }
+                    consume(lineEnd + 2);
+                    if (lineEnd == 0) {
+                        chunkState = ChunkState.DONE;
+                        endBody();
+                    }
+                }
+                default -> {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int findLineEnd(int from) {
+        for (int i = from; i + 1 < size; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseChunkSize(int from, int to) {
+        long value = 0;
+        int i = from;
+        for (; i < to && buffer[i] != ';' && buffer[i] != ' ' && buffer[i] != '\t'; i++) {
+            int digit = Character.digit(buffer[i], 16);
+            if (digit == -1 || value > maxBodySize) {
+                throw new HttpRequestError(400, "Invalid chunk size");
+            }
+            value = value * 16 + digit;
+        }
+        if (i == from) {
+            throw new HttpRequestError(400, "Invalid chunk size");
+        }
+        if (bodyReceived + value > maxBodySize) {
+            throw new HttpRequestError(413, "Request body larger than " + maxBodySize + " bytes");
+        }
+        return (int) value;
+    }
+}
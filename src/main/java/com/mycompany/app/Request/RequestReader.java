@@ -0,0 +1,85 @@
+package com.mycompany.app.Request;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import com.mycompany.app.sockets.BufferArena;
+
+// Blocking counterpart of the selector transport's framing, pulls one request
+// at a time off a socket so several can be served over the same connection.
+// A streamed body is read off the socket by the handler thread itself as it
+// reads the body stream, through fill(). The read buffer is borrowed from
+// BufferArena per call, an idle keep-alive connection holds none.
+public class RequestReader {
+    private final InputStream stream;
+    private final RequestFramer framer;
+    private static final int READ_SIZE = 4096;
+
+    public RequestReader(InputStream stream) {
+        this(stream, new RequestFramer());
+    }
+
+    public RequestReader(InputStream stream, int maxHeaderSize, int maxBodySize, int streamThreshold) {
+        this(stream, new RequestFramer(maxHeaderSize, maxBodySize, streamThreshold));
+    }
+
+    private RequestReader(InputStream stream, RequestFramer framer) {
+        this.stream = stream;
+        this.framer = framer;
+        this.framer.setRefill(this::fill);
+    }
+
+    // null once the client closed the connection or went idle past the socket
+    // timeout between two requests
+    public Request next() throws IOException {
+        if (framer.hasRequest()) {
+            return framer.takeRequest();
+        }
+        byte[] chunk = BufferArena.acquireArray(READ_SIZE);
+        try {
+            while (!framer.hasRequest()) {
+                int read;
+                try {
+                    read = stream.read(chunk);
+                } catch (SocketTimeoutException e) {
+                    if (framer.isEmpty()) {
+                        return null;
+                    }
+                    throw e;
+                }
+                if (read == -1) {
+                    if (framer.isEmpty()) {
+                        return null;
+                    }
+                    throw new EOFException("Connection closed in the middle of a request");
+                }
+                framer.append(ByteBuffer.wrap(chunk, 0, read));
+            }
+        } finally {
+            BufferArena.release(chunk);
+        }
+        return framer.takeRequest();
+    }
+
+    // feeds the body currently streamed, false on end of stream
+    private boolean fill() throws IOException {
+        if (framer.pump() > 0) {
+            return true;
+        }
+        byte[] chunk = BufferArena.acquireArray(READ_SIZE);
+        try {
+            int read = stream.read(chunk);
+            if (read == -1) {
+                return false;
+            }
+            framer.append(ByteBuffer.wrap(chunk, 0, read));
+        } finally {
+            BufferArena.release(chunk);
+        }
+        framer.pump();
+        return true;
+    }
+}
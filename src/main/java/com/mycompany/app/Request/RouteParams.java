@@ -0,0 +1,94 @@
+package com.mycompany.app.Request;
+
+import java.util.HashMap;
+
+import com.mycompany.app.Errors.HttpRequestError;
+import com.mycompany.app.Errors.HttpServerError;
+
+// What the matched route's :param and * segments captured, in path order.
+// names belongs to the route and is shared by every request on it, only the
+// values are per request. Routes have a handful of params at most so a scan
+// beats hashing.
+public class RouteParams {
+    public static final RouteParams EMPTY = new RouteParams(new String[0], new String[0]);
+
+    private final String[] names;
+    private final String[] values;
+
+    public RouteParams(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public String value(int index) {
+        return values[index];
+    }
+
+    public boolean has(String name) {
+        return indexOf(name) != -1;
+    }
+
+    // null when the route has no such param
+    public String get(String name) {
+        int index = indexOf(name);
+        return index == -1 ? null : values[index];
+    }
+
+    // a value that isn't a number is the client's fault, a 400
+    public int getInt(String name) {
+        String value = require(name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpRequestError(400, "Route parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    public long getLong(String name) {
+        String value = require(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new HttpRequestError(400, "Route parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    public HashMap<String, String> toMap() {
+        HashMap<String, String> map = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], values[i]);
+        }
+        return map;
+    }
+
+    private String require(String name) {
+        int index = indexOf(name);
+        if (index == -1) {
+            // asking for a param the route doesn't declare is a bug in the handler
+            throw new HttpServerError("Route has no parameter " + name);
+        }
+        return values[index];
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.mycompany.app.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.mycompany.app.sockets.BufferArena;
+
+// What a StreamingBody writes to. Writes are collected into chunks of up to
+// chunkSize bytes and each one goes out with its size line in front as soon
+// as it is full, or on flush(). Handing a chunk over blocks while the client
+// is too far behind, on the blocking transport because the socket write does
+// and on the selector one in ResponseOutputStream.sendPartial(). close()
+// sends the last chunk but leaves the connection open, only ResponseWriter
+// calls it and only for a body that completed. For an HTTP/1.0
+// client chunked is false and the bytes go out as they are. The buffer comes
+// from BufferArena, a chunk with its framing fits in chunkSize bytes.
+public class ChunkedOutputStream extends OutputStream {
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // room in front of the data for the size line, the hex of an int and CRLF
+    private static final int HEADER_ROOM = 10;
+
+    private final OutputStream out;
+    private final boolean chunked;
+    private final int chunkSize;
+    // size line, data and the CRLF after it, so a chunk is a single write
+    private byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    public ChunkedOutputStream(OutputStream out, int chunkSize, boolean chunked) {
+        this.out = out;
+        this.chunked = chunked;
+        this.buffer = BufferArena.acquireArray(Math.max(chunkSize, HEADER_ROOM + 1 + CRLF.length));
+        this.chunkSize = buffer.length - HEADER_ROOM - CRLF.length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == chunkSize) {
+            emit();
+        }
+        buffer[HEADER_ROOM + count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len >= chunkSize) {
+            // no point copying it, it becomes a chunk of its own
+            emit();
+            if (chunked) {
+                out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(b, off, len);
+                out.write(CRLF);
+            } else {
+                out.write(b, off, len);
+            }
+            push();
+            return;
+        }
+        while (len > 0) {
+            if (count == chunkSize) {
+                emit();
+            }
+            int n = Math.min(len, chunkSize - count);
+            System.arraycopy(b, off, buffer, HEADER_ROOM + count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // sends what has been written so far without waiting for a full chunk
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        emit();
+        if (!(out instanceof ResponseOutputStream)) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            emit();
+            closed = true;
+            if (chunked) {
+                out.write(LAST_CHUNK);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    // gives the buffer back without ending the body, for one that failed
+    // halfway. close() does it too, calling both is fine
+    public void release() {
+        closed = true;
+        if (buffer != null) {
+            BufferArena.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void emit() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (chunked) {
+            int start = HEADER_ROOM;
+            buffer[--start] = '\n';
+            buffer[--start] = '\r';
+            int n = count;
+            do {
+                buffer[--start] = HEX[n & 0xf];
+                n >>>= 4;
+            } while (n != 0);
+            System.arraycopy(CRLF, 0, buffer, HEADER_ROOM + count, CRLF.length);
+            out.write(buffer, start, HEADER_ROOM + count + CRLF.length - start);
+        } else {
+            out.write(buffer, HEADER_ROOM, count);
+        }
+        count = 0;
+        push();
+    }
+
+    private void push() throws IOException {
+        if (out instanceof ResponseOutputStream stream) {
+            stream.sendPartial();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed || buffer == null) {
+            throw new IOException("Response body stream is closed");
+        }
+    }
+}
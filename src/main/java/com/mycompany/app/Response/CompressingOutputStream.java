@@ -0,0 +1,76 @@
+package com.mycompany.app.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.mycompany.app.sockets.DeflaterPool;
+
+// gzip or deflate over a Deflater borrowed from DeflaterPool: close() or
+// release() gives it back to be reset and used for the next response.
+// GZIPOutputStream always makes its own, which is what this avoids. gzip
+// wants a deflater made with nowrap, deflate (zlib) one without. flush() is a
+// sync flush, what was written so far can be decoded once it arrives.
+public class CompressingOutputStream extends DeflaterOutputStream {
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final boolean gzip;
+    private final CRC32 crc;
+    private boolean finished;
+    private boolean released;
+
+    public CompressingOutputStream(OutputStream out, int level, boolean gzip) throws IOException {
+        super(out, DeflaterPool.acquire(level, gzip), 8 * 1024, true);
+        this.gzip = gzip;
+        this.crc = gzip ? new CRC32() : null;
+        if (gzip) {
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        if (gzip) {
+            crc.update(b, off, len);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        super.finish();
+        if (gzip) {
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            release();
+        }
+    }
+
+    // gives the deflater back without finishing the stream, for a body that
+    // failed halfway. close() does it too, calling both is fine
+    public void release() {
+        if (!released) {
+            released = true;
+            DeflaterPool.release(def, gzip);
+        }
+    }
+
+    // little endian, the way the gzip trailer has it
+    private void writeInt(int value) throws IOException {
+        out.write(new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) });
+    }
+}
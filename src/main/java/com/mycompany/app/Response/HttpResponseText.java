@@ -1,91 +1,123 @@
 package com.mycompany.app.Response;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
+// Reason phrases and whole "HTTP/1.1 <code> <reason>\r\n" lines, indexed by
+// status code. Every code from 100 to 599 has its line encoded when the class
+// loads, codes without a phrase of their own get "Unknown Status", so
+// ResponseWriter gets its status line from an array read with no boxing and
+// no allocation.
 public class HttpResponseText {
+    private static final int MIN_CODE = 100;
+    private static final int MAX_CODE = 599;
+    private static final String UNKNOWN = "Unknown Status";
 
-    // Static map holding all status code -> reason phrases
-    private static final Map<Integer, String> STATUS_TEXT = new HashMap<>();
+    private static final String[] REASONS = new String[MAX_CODE + 1];
+    private static final byte[][] STATUS_LINES = new byte[MAX_CODE + 1][];
 
-    // Load the map (call this once at startup)
-    public static void loadHttpResponseText() {
+    static {
+        for (int code = MIN_CODE; code <= MAX_CODE; code++) {
+            define(code, UNKNOWN);
+        }
         // 1xx Informational
-        STATUS_TEXT.put(100, "Continue");
-        STATUS_TEXT.put(101, "Switching Protocols");
-        STATUS_TEXT.put(102, "Processing");
-        STATUS_TEXT.put(103, "Early Hints");
+        define(100, "Continue");
+        define(101, "Switching Protocols");
+        define(102, "Processing");
+        define(103, "Early Hints");
 
         // 2xx Success
-        STATUS_TEXT.put(200, "OK");
-        STATUS_TEXT.put(201, "Created");
-        STATUS_TEXT.put(202, "Accepted");
-        STATUS_TEXT.put(203, "Non-Authoritative Information");
-        STATUS_TEXT.put(204, "No Content");
-        STATUS_TEXT.put(205, "Reset Content");
-        STATUS_TEXT.put(206, "Partial Content");
-        STATUS_TEXT.put(207, "Multi-Status");
-        STATUS_TEXT.put(208, "Already Reported");
-        STATUS_TEXT.put(226, "IM Used");
+        define(200, "OK");
+        define(201, "Created");
+        define(202, "Accepted");
+        define(203, "Non-Authoritative Information");
+        define(204, "No Content");
+        define(205, "Reset Content");
+        define(206, "Partial Content");
+        define(207, "Multi-Status");
+        define(208, "Already Reported");
+        define(226, "IM Used");
 
         // 3xx Redirection
-        STATUS_TEXT.put(300, "Multiple Choices");
-        STATUS_TEXT.put(301, "Moved Permanently");
-        STATUS_TEXT.put(302, "Found");
-        STATUS_TEXT.put(303, "See Other");
-        STATUS_TEXT.put(304, "Not Modified");
-        STATUS_TEXT.put(305, "Use Proxy");
-        STATUS_TEXT.put(307, "Temporary Redirect");
-        STATUS_TEXT.put(308, "Permanent Redirect");
+        define(300, "Multiple Choices");
+        define(301, "Moved Permanently");
+        define(302, "Found");
+        define(303, "See Other");
+        define(304, "Not Modified");
+        define(305, "Use Proxy");
+        define(307, "Temporary Redirect");
+        define(308, "Permanent Redirect");
 
         // 4xx Client Errors
-        STATUS_TEXT.put(400, "Bad Request");
-        STATUS_TEXT.put(401, "Unauthorized");
-        STATUS_TEXT.put(402, "Payment Required");
-        STATUS_TEXT.put(403, "Forbidden");
-        STATUS_TEXT.put(404, "Not Found");
-        STATUS_TEXT.put(405, "Method Not Allowed");
-        STATUS_TEXT.put(406, "Not Acceptable");
-        STATUS_TEXT.put(407, "Proxy Authentication Required");
-        STATUS_TEXT.put(408, "Request Timeout");
-        STATUS_TEXT.put(409, "Conflict");
-        STATUS_TEXT.put(410, "Gone");
-        STATUS_TEXT.put(411, "Length Required");
-        STATUS_TEXT.put(412, "Precondition Failed");
-        STATUS_TEXT.put(413, "Payload Too Large");
-        STATUS_TEXT.put(414, "URI Too Long");
-        STATUS_TEXT.put(415, "Unsupported Media Type");
-        STATUS_TEXT.put(416, "Range Not Satisfiable");
-        STATUS_TEXT.put(417, "Expectation Failed");
-        STATUS_TEXT.put(418, "I'm a teapot");
-        STATUS_TEXT.put(421, "Misdirected Request");
-        STATUS_TEXT.put(422, "Unprocessable Entity");
-        STATUS_TEXT.put(423, "Locked");
-        STATUS_TEXT.put(424, "Failed Dependency");
-        STATUS_TEXT.put(425, "Too Early");
-        STATUS_TEXT.put(426, "Upgrade Required");
-        STATUS_TEXT.put(428, "Precondition Required");
-        STATUS_TEXT.put(429, "Too Many Requests");
-        STATUS_TEXT.put(431, "Request Header Fields Too Large");
-        STATUS_TEXT.put(451, "Unavailable For Legal Reasons");
+        define(400, "Bad Request");
+        define(401, "Unauthorized");
+        define(402, "Payment Required");
+        define(403, "Forbidden");
+        define(404, "Not Found");
+        define(405, "Method Not Allowed");
+        define(406, "Not Acceptable");
+        define(407, "Proxy Authentication Required");
+        define(408, "Request Timeout");
+        define(409, "Conflict");
+        define(410, "Gone");
+        define(411, "Length Required");
+        define(412, "Precondition Failed");
+        define(413, "Payload Too Large");
+        define(414, "URI Too Long");
+        define(415, "Unsupported Media Type");
+        define(416, "Range Not Satisfiable");
+        define(417, "Expectation Failed");
+        define(418, "I'm a teapot");
+        define(421, "Misdirected Request");
+        define(422, "Unprocessable Entity");
+        define(423, "Locked");
+        define(424, "Failed Dependency");
+        define(425, "Too Early");
+        define(426, "Upgrade Required");
+        define(428, "Precondition Required");
+        define(429, "Too Many Requests");
+        define(431, "Request Header Fields Too Large");
+        define(451, "Unavailable For Legal Reasons");
 
         // 5xx Server Errors
-        STATUS_TEXT.put(500, "Internal Server Error");
-        STATUS_TEXT.put(501, "Not Implemented");
-        STATUS_TEXT.put(502, "Bad Gateway");
-        STATUS_TEXT.put(503, "Service Unavailable");
-        STATUS_TEXT.put(504, "Gateway Timeout");
-        STATUS_TEXT.put(505, "HTTP Version Not Supported");
-        STATUS_TEXT.put(506, "Variant Also Negotiates");
-        STATUS_TEXT.put(507, "Insufficient Storage");
-        STATUS_TEXT.put(508, "Loop Detected");
-        STATUS_TEXT.put(510, "Not Extended");
-        STATUS_TEXT.put(511, "Network Authentication Required");
+        define(500, "Internal Server Error");
+        define(501, "Not Implemented");
+        define(502, "Bad Gateway");
+        define(503, "Service Unavailable");
+        define(504, "Gateway Timeout");
+        define(505, "HTTP Version Not Supported");
+        define(506, "Variant Also Negotiates");
+        define(507, "Insufficient Storage");
+        define(508, "Loop Detected");
+        define(510, "Not Extended");
+        define(511, "Network Authentication Required");
+    }
+
+    // a status code of the application's own, or a different phrase for a
+    // standard one. Meant for setup, before the server starts
+    public static void register(int statusCode, String reason) {
+        if (statusCode < MIN_CODE || statusCode > MAX_CODE) {
+            throw new IllegalArgumentException("Status codes go from 100 to 599, not " + statusCode);
+        }
+        define(statusCode, reason);
+    }
+
+    private static void define(int statusCode, String reason) {
+        REASONS[statusCode] = reason;
+        STATUS_LINES[statusCode] = ("HTTP/1.1 " + statusCode + " " + reason + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
     }
 
     // Get the reason phrase for a given status code
-    public static String loadText(Integer statusCode) {
-        return STATUS_TEXT.getOrDefault(statusCode, "Unknown Status");
+    public static String loadText(int statusCode) {
+        return statusCode < MIN_CODE || statusCode > MAX_CODE ? UNKNOWN : REASONS[statusCode];
+    }
+
+    // the encoded status line, only a code out of range costs an allocation
+    public static byte[] statusLineBytes(int statusCode) {
+        if (statusCode < MIN_CODE || statusCode > MAX_CODE) {
+            return ("HTTP/1.1 " + statusCode + " " + UNKNOWN + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        return STATUS_LINES[statusCode];
     }
 
     // Optional: convenience method to get full status line
@@ -1,25 +1,40 @@
 package com.mycompany.app.Response;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
-import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Config.Json;
 import com.mycompany.app.Errors.DataTypeError;
 import com.mycompany.app.Errors.FileNotFound;
 import com.mycompany.app.Handlers.Cookie;
+import com.mycompany.app.Request.Request;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 import tools.jackson.core.JacksonException;
-import tools.jackson.databind.ObjectMapper;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
 
 @Getter
 @Setter
@@ -31,11 +46,52 @@ public class Response {
     private String contentType;
 
     private String body = "";
+    // a body that is bytes already (json() makes one), sent as it is and
+    // only turned into a String if somebody calls getBody()
+    private byte[] bodyBytes;
+    private boolean keepAlive = false;
+
+    // set by httpFileResponse, the file is sent as the body instead of body
+    // and never decoded into a String
+    private Path file;
+    private long fileSize;
+    private long fileModified;
+    // or the same out of StaticAssetCache, assetBody is the variant
+    // selectEncoding() picked
+    private StaticAssetCache.Asset asset;
+    private ByteBuffer assetBody;
+    // a 206 sends only these {first, last} byte ranges of the file body, more
+    // than one go out as multipart/byteranges separated by rangeBoundary
+    private List<long[]> ranges;
+    private String rangeBoundary;
+    // set by stream(), written after the head as a chunked body, or as it is
+    // to an HTTP/1.0 client which then loses the connection at its end
+    private StreamingBody streamingBody;
+    // what the streamed body reads from and holds open, a queryForStream
+    // Stream with its connection. Closed once the response is written, or
+    // when it is dropped or its body replaced before that
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AutoCloseable bodyResource;
+    private boolean chunked = true;
+    // gzip or deflate when ResponseCompression picked one for a streamed
+    // body, a body in memory is compressed already
+    private String contentEncoding;
+
+    // element by element and never completing an array that failed halfway
+    private static final ObjectWriter STREAMING_WRITER = Json.MAPPER.writer()
+            .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .without(StreamWriteFeature.AUTO_CLOSE_CONTENT);
 
     private HashMap<String, String> responseHeaders = new HashMap<String, String>();
 
     public static final Map<String, String> MIME_TYPES;
 
+    // more ranges than this in one request and the whole file is sent instead
+    private static final int MAX_RANGES = 16;
+    static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
     static {
         Map<String, String> map = new HashMap<>();
         map.put("html", "text/html");
@@ -45,6 +101,9 @@ public class Response {
         map.put("jpg", "image/jpeg");
         map.put("jpeg", "image/jpeg");
         map.put("gif", "image/gif");
+        map.put("svg", "image/svg+xml");
+        map.put("json", "application/json");
+        map.put("txt", "text/plain");
 
         MIME_TYPES = Collections.unmodifiableMap(map);
     }
@@ -67,46 +126,370 @@ public class Response {
         }
     }
 
+    // serialized straight to UTF-8 with the shared mapper, the bytes are what
+    // goes out and Content-Length is their length
     public void json(Object data) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            String value = mapper.writeValueAsString(data);
+            byte[] value = Json.writerForValue(data).writeValueAsBytes(data);
             this.contentType = "application/json";
-            this.body = value;
+            setBody(value);
         } catch (JacksonException e) {
             throw new DataTypeError("json");
         }
     }
 
+    // for payloads too big to hold in memory: data is serialized into the
+    // chunked body as it goes out, see stream(). A serialization error can
+    // only cut the response short then, there is no 500 to send any more.
+    // The writer leaves the body stream open, ending it is up to ResponseWriter
+    public void streamJson(Object data) {
+        this.contentType = "application/json";
+        ObjectWriter writer = Json.writerForValue(data).without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+        stream(out -> writer.writeValue(out, data));
+    }
+
+    // a JSON array written an element at a time as rows yields them, like the
+    // rows of JdbcTemplate.queryForStream, so it never sits in memory as a
+    // whole. rows is the body's resource, closed however the response ends.
+    // On an error the generator is left as it is: closing it would write the
+    // missing "]" and make a cut short array look complete
+    public void streamJsonArray(Stream<?> rows) {
+        this.contentType = "application/json";
+        stream(out -> {
+            JsonGenerator generator = STREAMING_WRITER.createGenerator(out);
+            generator.writeStartArray();
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                generator.writePOJO(iterator.next());
+            }
+            generator.writeEndArray();
+            generator.close();
+        }, rows);
+    }
+
     public void httpFileResponse(String route) throws IOException {
 
         int dot = route.lastIndexOf('.');
 
         this.setContentType(MIME_TYPES.getOrDefault(route.substring(dot + 1), "application/octet-stream"));
 
-        String baseDir = ConfigurationManager.getInstance().getConfig().getBaseDir();
-        File file = new File(baseDir + route).getCanonicalFile();
+        StaticAssetCache cache = StaticAssetCache.getInstance();
+        StaticAssetCache.Asset cached = cache.get(route);
+        closeBodyResource();
+        this.streamingBody = null;
+        if (cached != null) {
+            this.asset = cached;
+            this.file = null;
+            this.body = "";
+            this.bodyBytes = null;
+            return;
+        }
+        // too big to keep in memory, sent from disk
+        File file = cache.resolve(route);
+        this.asset = null;
+        this.file = file.toPath();
+        this.fileSize = file.length();
+        this.fileModified = file.lastModified();
+        this.body = "";
+        this.bodyBytes = null;
+    }
 
-        if (!file.exists() || !file.getPath()
-                .startsWith(new File(baseDir).getCanonicalPath())) {
-            throw new FileNotFound(route);
+    // Conditional and range requests against a file body, Route calls this
+    // once the handler is done. A matching If-None-Match/If-Modified-Since
+    // turns the response into a 304, a Range header into a 206 with just the
+    // ranges asked for (or a 416), anything else gets the whole file.
+    public void prepareFileBody(Request request) {
+        if (file == null && asset == null) {
+            return;
+        }
+        String range = statusCode == 200 && "GET".equals(request.getMethod()) ? request.getHeader("Range") : null;
+        // ranges count over the plain bytes, a range request never gets gzip
+        selectEncoding(range == null ? request.getHeader("Accept-Encoding") : null);
+        String etag = asset != null ? responseHeaders.get("ETag")
+                : "\"" + Long.toHexString(fileModified) + "-" + Long.toHexString(fileSize) + "\"";
+        long modified = asset != null ? asset.getModified() : fileModified;
+        String lastModified = httpDate(modified);
+        setHeader("ETag", etag);
+        setHeader("Last-Modified", lastModified);
+        setHeader("Accept-Ranges", "bytes");
+        if (statusCode != 200) {
+            return;
+        }
+
+        if (notModified(request, etag, modified)) {
+            setBody("");
+            statusCode = 304;
+            return;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (range == null || ifRange != null && !ifRange.equals(etag) && !ifRange.equals(lastModified)) {
+            return;
+        }
+        long length = asset != null ? assetBody.remaining() : fileSize;
+        List<long[]> satisfiable = parseRanges(range, length);
+        if (satisfiable == null) {
+            return;
+        }
+        if (satisfiable.isEmpty()) {
+            setBody("");
+            statusCode = 416;
+            setHeader("Content-Range", "bytes */" + length);
+            return;
+        }
+        statusCode = 206;
+        ranges = satisfiable;
+        if (satisfiable.size() == 1) {
+            setHeader("Content-Range", contentRange(satisfiable.get(0), length));
+        } else {
+            rangeBoundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are sent
+    private static boolean notModified(Request request, String etag, long modified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince == null) {
+            return false;
         }
-        ByteArrayInputStream stream = new ByteArrayInputStream(Files.readAllBytes(file.toPath()));
-        byte[] current = new byte[2048];
-        var read = 0;
-        StringBuilder builder = new StringBuilder();
         try {
-            while ((read = stream.read(current)) != -1) {
-                String stringToAdd = new String(current, 0, read, java.nio.charset.StandardCharsets.UTF_8);
-                builder.append(stringToAdd);
-                current = new byte[2048];
+            long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return modified / 1000 <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // "bytes=0-99, 200-, -50" against a body of length bytes. null when the
+    // header isn't understood (the whole body goes out then), empty when none
+    // of the ranges are satisfiable
+    static List<long[]> parseRanges(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> result = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            try {
+                long first;
+                long last;
+                if (dash == 0) {
+                    // the final n bytes
+                    long suffix = digits(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = digits(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        last = length - 1;
+                    } else {
+                        last = digits(spec.substring(dash + 1));
+                        if (last < first) {
+                            return null;
+                        }
+                        last = Math.min(last, length - 1);
+                    }
+                    if (first < 0) {
+                        return null;
+                    }
+                }
+                if (first < length) {
+                    result.add(new long[] { first, last });
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    // plain digits only, Long.parseLong would take "-5" or "+5" as well
+    private static long digits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(value);
+            }
+        }
+        return Long.parseLong(value);
+    }
+
+    private static String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    // what goes in front of every part of a multipart/byteranges body
+    byte[] rangePartHeader(long[] range) {
+        long length = asset != null ? assetBody.remaining() : fileSize;
+        return ("\r\n--" + rangeBoundary + "\r\n" +
+                "Content-Type: " + contentType + "\r\n" +
+                "Content-Range: " + contentRange(range, length) + "\r\n" +
+                "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    byte[] rangeTrailer() {
+        return ("\r\n--" + rangeBoundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private long rangeBodyLength() {
+        long total = 0;
+        for (long[] range : ranges) {
+            if (rangeBoundary != null) {
+                total += rangePartHeader(range).length;
+            }
+            total += range[1] - range[0] + 1;
+        }
+        return rangeBoundary != null ? total + rangeTrailer().length : total;
+    }
+
+    private static String httpDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    // picks the gzip variant of a cached file when the client takes it
+    public void selectEncoding(String acceptEncoding) {
+        if (asset == null) {
+            return;
+        }
+        boolean gzip = asset.getGzipBody() != null && acceptsEncoding(acceptEncoding, "gzip");
+        if (asset.getGzipBody() != null) {
+            setHeader("Vary", "Accept-Encoding");
+        }
+        if (gzip) {
+            setHeader("Content-Encoding", "gzip");
+        } else {
+            responseHeaders.remove("Content-Encoding");
+        }
+        setHeader("ETag", gzip ? asset.getGzipEtag() : asset.getEtag());
+        this.assetBody = asset.body(gzip);
+    }
+
+    // whether Accept-Encoding lets coding through: named with a q above 0,
+    // or not named and "*" is. An exact name wins over "*"
+    static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double wildcard = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase(coding)) {
+                return quality(parts) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality(parts);
             }
-            this.body = builder.toString();
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new FileNotFound(route);
         }
+        return wildcard > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
 
+    // For bodies too big or too slow to build as a String first: body gets
+    // the output once the handler has returned and writes it a chunk at a
+    // time, flush() sends what is there so far. Writes block while the client
+    // is behind. Whatever body was set before is dropped
+    public void stream(StreamingBody body) {
+        stream(body, null);
+    }
+
+    // the same for a body reading from something that has to be closed,
+    // resource is closed once the response is written or dropped
+    public void stream(StreamingBody body, AutoCloseable resource) {
+        setBody("");
+        this.streamingBody = body;
+        this.bodyResource = resource;
+    }
+
+    // ResponseWriter and Route call it when the response is done with,
+    // calling it again does nothing
+    public void closeBodyResource() {
+        AutoCloseable resource = bodyResource;
+        bodyResource = null;
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // HTTP/1.0 doesn't know chunked, the body is sent as it is and the
+    // connection closed to end it
+    public void prepareStream(Request request) {
+        if (streamingBody != null && "HTTP/1.0".equals(request.httpType())) {
+            chunked = false;
+            keepAlive = false;
+        }
+    }
+
+    public String getBody() {
+        if (bodyBytes != null) {
+            return new String(bodyBytes, StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    // a body that is already UTF-8, set without going through a String
+    public void setBody(byte[] body) {
+        setBody("");
+        this.bodyBytes = body;
+    }
+
+    // the body as it goes out
+    byte[] encodedBody() {
+        return bodyBytes != null ? bodyBytes : body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a body set after httpFileResponse or stream() replaces the file
+    public void setBody(String body) {
+        closeBodyResource();
+        this.body = body;
+        this.bodyBytes = null;
+        this.streamingBody = null;
+        this.contentEncoding = null;
+        this.file = null;
+        this.asset = null;
+        this.assetBody = null;
+        this.ranges = null;
+        this.rangeBoundary = null;
     }
 
     public void setHeader(String key, String value) {
@@ -121,18 +504,38 @@ public class Response {
         return stringBuilder.toString();
     }
 
+    // the head as text, what ResponseWriter puts on the wire as bytes
     public String formulateResponseHeaders() {
-        StringBuilder builder = new StringBuilder();
-        this.setHeader("X-Powered-By", "TheHunterJavaServer/1.0");
-        builder.append(String.format("HTTP/1.1 %s %s\r\n" +
-                "Content-Type: %s; charset=UTF-8\r\n" +
-                "Content-Length: " + this.getBody().length() + "\r\n" +
-                "Connection: close\r\n" + "%s", this.getStatusCode(), HttpResponseText.loadText(statusCode),
-                this.getContentType(), this.createResponseSetCookieHeaders()));
-        for (Map.Entry<String, String> entry : responseHeaders.entrySet()) {
-            builder.append(String.format("%s: %s\r\n", entry.getKey(), entry.getValue()));
-        }
-        builder.append("\r\n");
-        return builder.toString();
+        prepareBody();
+        byte[] encoded = file == null && asset == null && streamingBody == null ? encodedBody() : null;
+        return StandardCharsets.UTF_8.decode(ResponseWriter.encodeHead(this, contentLength(encoded))).toString();
+    }
+
+    // a cached file nobody picked an encoding for goes out as it is
+    void prepareBody() {
+        if (asset != null && assetBody == null) {
+            selectEncoding(null);
+        }
+    }
+
+    // encodedBody is body as UTF-8, only looked at when there is no file.
+    // A streamed body has none, -1
+    long contentLength(byte[] encodedBody) {
+        if (streamingBody != null) {
+            return -1;
+        }
+        return ranges != null ? rangeBodyLength()
+                : asset != null ? assetBody.remaining()
+                        : file != null ? fileSize : encodedBody.length;
+    }
+
+    // text of any kind is worth compressing, images other than SVG aren't
+    static boolean isCompressible(String type) {
+        return isText(type) || "image/svg+xml".equals(type);
+    }
+
+    static boolean isText(String type) {
+        return type != null && (type.startsWith("text/") || type.equals("application/javascript")
+                || type.equals("application/json"));
     }
 }
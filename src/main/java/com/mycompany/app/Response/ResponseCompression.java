@@ -0,0 +1,104 @@
+package com.mycompany.app.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Request.Request;
+
+// gzip/deflate for what handlers answer with, Route runs it once the handler
+// is done. Bodies in memory of a compressible type and at least
+// compressionMinSize bytes are compressed right here, Content-Length then
+// counts the compressed bytes. A streamed body is compressed on its way into
+// the chunks. Files are left alone: StaticAssetCache already keeps a gzip
+// variant of the ones in memory and the big ones go out with transferTo.
+// Deflaters come out of DeflaterPool and go back to it once the body is done,
+// instead of a new one per response.
+public class ResponseCompression {
+
+    public static void apply(Response response, Request request) {
+        Configuration config = config();
+        if (!Boolean.TRUE.equals(config.getCompressResponses()) || !candidate(response)) {
+            return;
+        }
+        boolean streamed = response.getStreamingBody() != null;
+        if (!streamed && response.encodedBody().length < config.getCompressionMinSize()) {
+            return;
+        }
+        // caches have to keep the variants apart whether or not this client
+        // gets the compressed one
+        String vary = response.getResponseHeaders().get("Vary");
+        if (vary == null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        } else if (!vary.toLowerCase().contains("accept-encoding")) {
+            response.setHeader("Vary", vary + ", Accept-Encoding");
+        }
+        String encoding = negotiate(request.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            return;
+        }
+        if (!streamed) {
+            byte[] body = response.encodedBody();
+            byte[] compressed = compress(body, encoding);
+            if (compressed.length >= body.length) {
+                return;
+            }
+            response.setBodyBytes(compressed);
+        }
+        response.setContentEncoding(encoding);
+        response.setHeader("Content-Encoding", encoding);
+        String etag = response.getResponseHeaders().get("ETag");
+        if (etag != null && etag.startsWith("\"")) {
+            // a strong ETag names the exact bytes, these aren't those
+            response.setHeader("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+        }
+    }
+
+    // what a streamed body is written through, close() finishes the
+    // compressed stream and closes out
+    static CompressingOutputStream encoder(OutputStream out, String encoding) throws IOException {
+        return new CompressingOutputStream(out, level(), encoding.equals("gzip"));
+    }
+
+    private static boolean candidate(Response response) {
+        int status = response.getStatusCode();
+        return status >= 200 && status != 204 && status != 206 && status != 304
+                && response.getFile() == null && response.getAsset() == null
+                && !response.getResponseHeaders().containsKey("Content-Encoding")
+                && Response.isCompressible(response.getContentType());
+    }
+
+    private static byte[] compress(byte[] body, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (OutputStream encoder = encoder(out, encoding)) {
+            encoder.write(body);
+        } catch (IOException e) {
+            // only a ByteArrayOutputStream underneath
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // gzip when the client takes it, deflate otherwise, null for neither
+    static String negotiate(String acceptEncoding) {
+        if (Response.acceptsEncoding(acceptEncoding, "gzip")) {
+            return "gzip";
+        }
+        if (Response.acceptsEncoding(acceptEncoding, "deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    private static int level() {
+        return config().getCompressionLevel();
+    }
+
+    private static Configuration config() {
+        Configuration config = ConfigurationManager.getInstance().getConfig();
+        return config != null ? config : new Configuration();
+    }
+}
@@ -0,0 +1,35 @@
+package com.mycompany.app.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// What the transports hand to HttpDriver.dispatch. On top of plain writes it
+// takes file contents without them being copied onto the heap: the blocking
+// transport transferTo()s them to its SocketChannel right away, the selector
+// transport queues them for the reactor to do the same.
+public abstract class ResponseOutputStream extends OutputStream {
+
+    // sends count bytes of file from position on, file belongs to the stream
+    // from here on and is closed once it has been sent
+    public abstract void sendFile(FileChannel file, long position, long count) throws IOException;
+
+    // sends what is left in buffer (a file out of StaticAssetCache),
+    // buffer must not be touched by the caller afterwards
+    public abstract void sendBuffer(ByteBuffer buffer) throws IOException;
+
+    // sends what is left in each of buffers in order, as one gathering write
+    // where the stream can do that, same rules as sendBuffer
+    public void sendBuffers(ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            sendBuffer(buffer);
+        }
+    }
+
+    // for a streamed body: hands over what was written so far without waiting
+    // for the response to end, and blocks while the client is too far behind.
+    // Writes that go straight to the socket need nothing more
+    public void sendPartial() throws IOException {
+    }
+}
@@ -0,0 +1,350 @@
+package com.mycompany.app.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+
+// Puts a Response on the wire. The head is built as bytes: status lines come
+// encoded out of HttpResponseText, the headers every response has are encoded
+// once and copied in, Date is re-encoded once a second, and only the
+// handler's own headers get encoded per response. Content-Length counts the
+// encoded body, so non-ASCII bodies get the right one. Head and an in-memory
+// body leave together in one gathering write.
+public class ResponseWriter {
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] HEADER_SEPARATOR = ascii(": ");
+    private static final byte[] CONTENT_TYPE = ascii("Content-Type: ");
+    private static final byte[] MULTIPART_BYTERANGES = ascii("Content-Type: multipart/byteranges; boundary=");
+    private static final byte[] CHARSET_UTF_8 = ascii("; charset=UTF-8");
+    private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = ascii("Transfer-Encoding: chunked\r\n");
+    private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+    private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+    private static final byte[] X_POWERED_BY = ascii("X-Powered-By: TheHunterJavaServer/1.0\r\n");
+
+    private static final class DateLine {
+        private final long second;
+        private final byte[] bytes;
+
+        private DateLine(long second, byte[] bytes) {
+            this.second = second;
+            this.bytes = bytes;
+        }
+    }
+
+    private static volatile DateLine dateLine = new DateLine(-1, null);
+
+    // writes result's head and body to out, returns whether the connection
+    // can stay open afterwards
+    public static boolean write(OutputStream out, Response result) throws IOException {
+        try {
+            return writeResponse(out, result);
+        } finally {
+            // a streamed body's source is closed however the write went
+            result.closeBodyResource();
+        }
+    }
+
+    private static boolean writeResponse(OutputStream out, Response result) throws IOException {
+        result.prepareBody();
+        // a body from a file is never encoded, the rest only once
+        byte[] body = result.getFile() == null && result.getAsset() == null && result.getStreamingBody() == null
+                ? result.encodedBody()
+                : null;
+        ByteBuffer head = encodeHead(result, result.contentLength(body));
+        if (result.getStatusCode() == 304) {
+            // no body, not even an empty one
+            send(out, head);
+        } else if (result.getStreamingBody() != null) {
+            send(out, head);
+            writeStream(out, result);
+        } else if (result.getRanges() != null) {
+            send(out, head);
+            writeRanges(out, result);
+        } else if (result.getAssetBody() != null) {
+            send(out, head, result.getAssetBody());
+        } else if (result.getFile() != null) {
+            send(out, head);
+            writeFile(out, result.getFile(), 0, result.getFileSize());
+        } else {
+            send(out, head, ByteBuffer.wrap(body));
+        }
+        out.flush();
+        return result.isKeepAlive();
+    }
+
+    // status line, headers and the blank line after them
+    static ByteBuffer encodeHead(Response result, long contentLength) {
+        Map<String, String> headers = result.getResponseHeaders();
+        // a handler can still force the connection shut with
+        // setHeader("Connection", "close")
+        String connection = headers.get("Connection");
+        if (connection != null && connection.equalsIgnoreCase("close")) {
+            result.setKeepAlive(false);
+        }
+
+        HeadBuffer head = new HeadBuffer();
+        head.put(HttpResponseText.statusLineBytes(result.getStatusCode()));
+        head.put(dateLine());
+        head.put(X_POWERED_BY);
+        if (result.getStatusCode() != 304) {
+            if (result.getRangeBoundary() != null) {
+                head.put(MULTIPART_BYTERANGES);
+                head.put(result.getRangeBoundary());
+                head.put(CRLF);
+            } else if (result.getContentType() != null) {
+                head.put(CONTENT_TYPE);
+                head.put(result.getContentType());
+                // images and the like don't get a charset
+                boolean raw = result.getFile() != null || result.getAsset() != null
+                        || result.getStreamingBody() != null;
+                if (!raw || Response.isText(result.getContentType())) {
+                    head.put(CHARSET_UTF_8);
+                }
+                head.put(CRLF);
+            }
+            if (result.getStreamingBody() == null) {
+                head.put(CONTENT_LENGTH);
+                head.put(contentLength);
+                head.put(CRLF);
+            } else if (result.isChunked()) {
+                head.put(TRANSFER_ENCODING_CHUNKED);
+            }
+        }
+        head.put(result.isKeepAlive() ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
+        head.put(result.createResponseSetCookieHeaders());
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey().equals("Connection")) {
+                continue;
+            }
+            head.put(entry.getKey());
+            head.put(HEADER_SEPARATOR);
+            head.put(entry.getValue());
+            head.put(CRLF);
+        }
+        head.put(CRLF);
+        return head.toBuffer();
+    }
+
+    // the clock only ticks once a second as far as Date is concerned
+    static byte[] dateLine() {
+        long second = System.currentTimeMillis() / 1000;
+        DateLine cached = dateLine;
+        if (cached.second != second) {
+            String date = Response.HTTP_DATE.format(Instant.ofEpochSecond(second));
+            cached = new DateLine(second, ascii("Date: " + date + "\r\n"));
+            dateLine = cached;
+        }
+        return cached.bytes;
+    }
+
+    private static void send(OutputStream out, ByteBuffer... buffers) throws IOException {
+        if (out instanceof ResponseOutputStream stream) {
+            stream.sendBuffers(buffers);
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            writeBuffer(out, buffer);
+        }
+    }
+
+    // a cached file, straight from its direct buffer
+    private static void writeBuffer(OutputStream out, ByteBuffer buffer) throws IOException {
+        if (out instanceof ResponseOutputStream stream) {
+            stream.sendBuffer(buffer);
+            return;
+        }
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    // the head is out already, if the body fails halfway all that can be
+    // done is to cut the response short and drop the connection. The body
+    // only gets a view whose close() flushes, the compressed stream and the
+    // last chunk are ended here once writeTo has returned normally, so a
+    // body that closes its stream on the way out of an error (Jackson does)
+    // can't make a cut short response look complete
+    private static void writeStream(OutputStream out, Response result) throws IOException {
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, chunkSize(), result.isChunked());
+        CompressingOutputStream encoder = null;
+        try {
+            OutputStream body = chunks;
+            if (result.getContentEncoding() != null) {
+                encoder = ResponseCompression.encoder(chunks, result.getContentEncoding());
+                body = encoder;
+            }
+            try {
+                result.getStreamingBody().writeTo(new BodyView(body));
+            } catch (RuntimeException e) {
+                throw new IOException("Streamed response body failed", e);
+            }
+            if (encoder != null) {
+                encoder.finish();
+            }
+            // the last chunk
+            chunks.close();
+        } finally {
+            // pooled buffer and deflater go back even when the body didn't
+            // make it, the response is not ended in that case
+            if (encoder != null) {
+                encoder.release();
+            }
+            chunks.release();
+        }
+    }
+
+    private static int chunkSize() {
+        Configuration config = ConfigurationManager.getInstance().getConfig();
+        return config != null ? config.getResponseChunkSize() : new Configuration().getResponseChunkSize();
+    }
+
+    // a 206, each range straight from the cached buffer or the file
+    private static void writeRanges(OutputStream out, Response result) throws IOException {
+        boolean multipart = result.getRangeBoundary() != null;
+        for (long[] range : result.getRanges()) {
+            if (multipart) {
+                out.write(result.rangePartHeader(range));
+            }
+            long count = range[1] - range[0] + 1;
+            if (result.getAssetBody() != null) {
+                ByteBuffer slice = result.getAssetBody().duplicate();
+                slice.limit((int) (range[1] + 1)).position((int) range[0]);
+                writeBuffer(out, slice);
+            } else {
+                writeFile(out, result.getFile(), range[0], count);
+            }
+        }
+        if (multipart) {
+            out.write(result.rangeTrailer());
+        }
+    }
+
+    // files too big for StaticAssetCache never pass through a String either,
+    // they go from the file straight to the socket
+    private static void writeFile(OutputStream out, Path file, long position, long count) throws IOException {
+        if (out instanceof ResponseOutputStream stream) {
+            stream.sendFile(FileChannel.open(file, StandardOpenOption.READ), position, count);
+            return;
+        }
+        // any other stream still gets the bytes as they are, a chunk at a time
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = position + count;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new IOException(file + " shrank while it was being sent");
+                }
+                position += sent;
+            }
+        }
+    }
+
+    // what a StreamingBody writes to, closing it is only a flush
+    private static final class BodyView extends OutputStream {
+        private final OutputStream out;
+
+        BodyView(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // a growable byte array the head is copied into
+    private static final class HeadBuffer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void put(byte[] chunk) {
+            ensure(chunk.length);
+            System.arraycopy(chunk, 0, bytes, size, chunk.length);
+            size += chunk.length;
+        }
+
+        // header names and values are ASCII nearly always, those are copied a
+        // char at a time instead of going through an encoder
+        void put(String text) {
+            int length = text.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    put(text.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[size + i] = (byte) c;
+            }
+            size += length;
+        }
+
+        void put(long value) {
+            if (value == 0) {
+                ensure(1);
+                bytes[size++] = '0';
+                return;
+            }
+            int digits = 0;
+            for (long rest = value; rest > 0; rest /= 10) {
+                digits++;
+            }
+            ensure(digits);
+            for (int i = size + digits - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+}
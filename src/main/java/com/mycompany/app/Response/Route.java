@@ -2,7 +2,6 @@ package com.mycompany.app.Response;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,6 +17,8 @@ import lombok.Getter;
 
 @Getter
 public class Route {
+    public static final long DISCARD_LIMIT = 64 * 1024;
+
     private String route;
     private String method;
     private RequestHandler handler;
@@ -58,7 +59,13 @@ public class Route {
     }
 
     public void executeRoute(OutputStream out, Request request) throws IOException {
+        executeRoute(out, request, false);
+    }
+
+    // returns whether the connection can be kept open after this response
+    public boolean executeRoute(OutputStream out, Request request, boolean keepAlive) throws IOException {
         Response response = new Response();
+        response.setKeepAlive(keepAlive);
 
         for (Map.Entry<String, ArrayList<Middleware>> element : Server.middlewares.entrySet()) {
             if (route.contains(element.getKey())) {
@@ -67,21 +74,39 @@ public class Route {
                 }
             }
         }
-        Response result;
-        if (this.dbHandler != null) {
-            if (Server.jdbcTemplate == null) {
-                throw new HttpServerError(
-                        "Database connection is not enabled. Please enable it before using DB routes. use server.enableDatabaseConnection()");
+        Response result = null;
+        try {
+            try {
+                if (this.dbHandler != null) {
+                    if (Server.jdbcTemplate == null) {
+                        throw new HttpServerError(
+                                "Database connection is not enabled. Please enable it before using DB routes. use server.enableDatabaseConnection()");
+                    }
+                    result = this.dbHandler.apply(request, response, Server.jdbcTemplate);
+                } else {
+                    result = this.handler.apply(request, response);
+                }
+            } finally {
+                request.deleteParts();
+            }
+            // whatever the handler didn't read of a streamed body has to come off
+            // the connection before the next request can be read
+            if (!request.discardBody(DISCARD_LIMIT)) {
+                result.setKeepAlive(false);
+            }
+            result.prepareFileBody(request);
+            result.prepareStream(request);
+            ResponseCompression.apply(result, request);
+            return ResponseWriter.write(out, result);
+        } finally {
+            // a response that never got written, because something threw or
+            // the handler returned another one, still lets go of what its
+            // streamed body held
+            response.closeBodyResource();
+            if (result != null) {
+                result.closeBodyResource();
             }
-            result = this.dbHandler.apply(request, response, Server.jdbcTemplate);
-        } else {
-            result = this.handler.apply(request, response);
         }
-        String responseHeaders = result.formulateResponseHeaders();
-        byte[] body = result.getBody().getBytes(StandardCharsets.UTF_8);
-        out.write(responseHeaders.getBytes(StandardCharsets.UTF_8));
-        out.write(body);
-        out.flush();
     }
 
     @Override
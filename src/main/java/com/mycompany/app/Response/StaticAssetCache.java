@@ -0,0 +1,294 @@
+package com.mycompany.app.Response;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Errors.FileNotFound;
+
+import lombok.Getter;
+
+// Files under baseDir loaded once and served from memory after that, along
+// with a gzip variant for text types and a strong ETag for each. Entries are
+// keyed by the route asked for, so a hit doesn't touch the disk at all: a
+// WatchService on baseDir drops the entries of files that changed and the next
+// request loads them again. If the watch can't be set up every hit checks the
+// file's size and mtime instead. Files above maxFileSize aren't cached,
+// httpFileResponse sends those with transferTo. The least recently used
+// entries go once the total passes maxTotalSize.
+public class StaticAssetCache {
+    // not worth a Content-Encoding header below this
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    @Getter
+    public static class Asset {
+        private final Path path;
+        private final long size;
+        private final long modified;
+        private final String etag;
+        // null when the type doesn't compress or gzip didn't make it smaller
+        private final String gzipEtag;
+        private final ByteBuffer body;
+        private final ByteBuffer gzipBody;
+
+        Asset(Path path, long size, long modified, String etag, ByteBuffer body, ByteBuffer gzipBody) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.etag = "\"" + etag + "\"";
+            this.gzipEtag = gzipBody == null ? null : "\"" + etag + "-gzip\"";
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+
+        // how much of the memory budget this one takes
+        long footprint() {
+            return body.capacity() + (gzipBody == null ? 0 : gzipBody.capacity());
+        }
+
+        // the buffers are shared, every response sends from its own view
+        public ByteBuffer body(boolean gzip) {
+            return (gzip ? gzipBody : body).duplicate();
+        }
+    }
+
+    private final Path baseDir;
+    private final long maxFileSize;
+    private final long maxTotalSize;
+    private final LinkedHashMap<String, Asset> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+    // bumped on every invalidation, a load that raced with one isn't kept
+    private long generation;
+    private volatile boolean watching;
+
+    public StaticAssetCache(Path baseDir, long maxFileSize, long maxTotalSize) {
+        this.baseDir = baseDir;
+        this.maxFileSize = maxFileSize;
+        this.maxTotalSize = maxTotalSize;
+    }
+
+    private static class Holder {
+        private static final StaticAssetCache INSTANCE = create();
+
+        private static StaticAssetCache create() {
+            Configuration config = ConfigurationManager.getInstance().getConfig();
+            if (config == null) {
+                config = new Configuration();
+            }
+            StaticAssetCache cache = new StaticAssetCache(Path.of(config.getBaseDir()),
+                    config.getStaticFileCacheMaxFileSize(), config.getStaticFileCacheSize());
+            cache.startWatching();
+            return cache;
+        }
+    }
+
+    // the one httpFileResponse serves from, over the configured baseDir
+    public static StaticAssetCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // the cached file for route, null if it's too big to be cached. Throws
+    // FileNotFound for missing files and ones outside baseDir
+    public Asset get(String route) throws IOException {
+        Asset asset;
+        long seen;
+        synchronized (this) {
+            asset = entries.get(route);
+            seen = generation;
+        }
+        if (asset != null) {
+            if (watching || isCurrent(asset)) {
+                return asset;
+            }
+            remove(route);
+        }
+
+        File file = resolve(route);
+        long size = file.length();
+        if (size > maxFileSize || size > maxTotalSize) {
+            return null;
+        }
+        asset = load(file.toPath(), file.lastModified());
+        synchronized (this) {
+            if (generation != seen) {
+                return asset;
+            }
+            Asset previous = entries.put(route, asset);
+            if (previous != null) {
+                totalSize -= previous.footprint();
+            }
+            totalSize += asset.footprint();
+            evict();
+        }
+        return asset;
+    }
+
+    // route as a file under baseDir, the same checks httpFileResponse always did
+    public File resolve(String route) throws IOException {
+        File file = new File(baseDir.toString() + route).getCanonicalFile();
+        if (!file.isFile() || !file.getPath().startsWith(baseDir.toFile().getCanonicalPath())) {
+            throw new FileNotFound(route);
+        }
+        return file;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        totalSize = 0;
+    }
+
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    // drops whatever came from path, or from under it for a directory
+    public synchronized void invalidate(Path path) {
+        generation++;
+        Iterator<Asset> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Asset asset = iterator.next();
+            if (asset.path.startsWith(path)) {
+                totalSize -= asset.footprint();
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void remove(String route) {
+        Asset asset = entries.remove(route);
+        if (asset != null) {
+            totalSize -= asset.footprint();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Asset>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxTotalSize && iterator.hasNext()) {
+            totalSize -= iterator.next().getValue().footprint();
+            iterator.remove();
+        }
+    }
+
+    private static boolean isCurrent(Asset asset) {
+        File file = asset.path.toFile();
+        return file.length() == asset.size && file.lastModified() == asset.modified;
+    }
+
+    private static Asset load(Path path, long modified) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer gzip = null;
+        if (bytes.length >= MIN_COMPRESS_SIZE && isCompressible(path)) {
+            byte[] compressed = gzip(bytes);
+            if (compressed.length < bytes.length) {
+                gzip = direct(compressed);
+            }
+        }
+        return new Asset(path, bytes.length, modified, etag(bytes), direct(bytes), gzip);
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    // done once per load so it may as well be the best compression there is
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (CompressingOutputStream gzip = new CompressingOutputStream(out, Deflater.BEST_COMPRESSION, true)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isCompressible(Path path) {
+        String name = path.getFileName().toString();
+        String type = Response.MIME_TYPES.get(name.substring(name.lastIndexOf('.') + 1));
+        return Response.isCompressible(type);
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // watches baseDir and everything below it on a daemon thread
+    public void startWatching() {
+        WatchService watcher;
+        Path root;
+        try {
+            root = baseDir.toRealPath();
+            watcher = root.getFileSystem().newWatchService();
+            try (Stream<Path> dirs = Files.walk(root)) {
+                for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                    dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Not watching " + baseDir + " for changes, cached files are checked on every hit: "
+                    + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> watch(watcher), "static-asset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        watching = true;
+    }
+
+    private void watch(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // events got lost, nothing cached can be trusted
+                        clear();
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    invalidate(changed);
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                        try {
+                            changed.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watching = false;
+            clear();
+        }
+    }
+}
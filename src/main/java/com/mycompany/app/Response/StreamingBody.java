@@ -0,0 +1,14 @@
+package com.mycompany.app.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// A response body written bit by bit instead of set as one String, see
+// Response.stream(). It runs once the handler has returned and the head is
+// out, so the request's body and uploads are gone by then. Closing out only
+// flushes it, the body is ended once writeTo returns, and if it throws
+// instead the response is cut short and the connection dropped.
+@FunctionalInterface
+public interface StreamingBody {
+    void writeTo(OutputStream out) throws IOException;
+}
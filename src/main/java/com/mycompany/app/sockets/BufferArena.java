@@ -0,0 +1,192 @@
+package com.mycompany.app.sockets;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Config.ConfigurationManager;
+
+// Buffers for the whole I/O path: reads off the sockets, request body and
+// multipart parsing, chunked responses. Sizes come in classes of 4, 8, 16, 32
+// and 64 KB, a request gets the smallest class that fits, anything bigger is
+// allocated fresh and left to the GC when released. Heap arrays and direct
+// buffers are kept apart. Every thread keeps a couple of each class in front
+// of a shared queue, so the reactor and worker threads that borrow and give
+// back the same buffer over and over don't contend, virtual threads go to
+// the shared queue directly. A buffer must be released
+// once, by whoever acquired it, and not touched afterwards. With
+// bufferLeakDetection on, buffers that are lost or released twice are
+// reported with the stack that took them.
+public final class BufferArena {
+    private static final int MIN_SHIFT = 12;
+    private static final int MAX_SHIFT = 16;
+    private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+    private static final int THREAD_CACHE_SIZE = 2;
+    private static final int SHARED_CACHE_SIZE = 64;
+
+    private static final SharedCache<byte[]> HEAP = new SharedCache<>();
+    private static final SharedCache<ByteBuffer> DIRECT = new SharedCache<>();
+    private static final ThreadLocal<ThreadCache> LOCAL = ThreadLocal.withInitial(ThreadCache::new);
+    private static final LeakTracker LEAKS = leakDetection() ? new LeakTracker("buffer") : null;
+
+    // one queue per size class, counted separately because
+    // ConcurrentLinkedQueue.size() walks the queue
+    private static final class SharedCache<T> {
+        @SuppressWarnings("unchecked")
+        private final ConcurrentLinkedQueue<T>[] queues = new ConcurrentLinkedQueue[CLASSES];
+        private final AtomicInteger[] sizes = new AtomicInteger[CLASSES];
+
+        SharedCache() {
+            for (int i = 0; i < CLASSES; i++) {
+                queues[i] = new ConcurrentLinkedQueue<>();
+                sizes[i] = new AtomicInteger();
+            }
+        }
+
+        T poll(int sizeClass) {
+            T item = queues[sizeClass].poll();
+            if (item != null) {
+                sizes[sizeClass].decrementAndGet();
+            }
+            return item;
+        }
+
+        void offer(int sizeClass, T item) {
+            if (sizes[sizeClass].incrementAndGet() > SHARED_CACHE_SIZE) {
+                sizes[sizeClass].decrementAndGet();
+                return;
+            }
+            queues[sizeClass].offer(item);
+        }
+    }
+
+    private static final class ThreadCache {
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<byte[]>[] heap = new ArrayDeque[CLASSES];
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<ByteBuffer>[] direct = new ArrayDeque[CLASSES];
+
+        ThreadCache() {
+            for (int i = 0; i < CLASSES; i++) {
+                heap[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+                direct[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            }
+        }
+    }
+
+    private BufferArena() {
+    }
+
+    // an array of at least minSize bytes, its contents are whatever the last
+    // user left in it
+    public static byte[] acquireArray(int minSize) {
+        int sizeClass = sizeClass(minSize);
+        if (sizeClass == -1) {
+            return new byte[minSize];
+        }
+        ThreadCache cache = localCache();
+        byte[] array = cache != null ? cache.heap[sizeClass].pollFirst() : null;
+        if (array == null) {
+            array = HEAP.poll(sizeClass);
+        }
+        if (array == null) {
+            array = new byte[1 << (MIN_SHIFT + sizeClass)];
+        }
+        track(array);
+        return array;
+    }
+
+    public static void release(byte[] array) {
+        int sizeClass = exactClass(array.length);
+        if (sizeClass == -1) {
+            return;
+        }
+        if (!untrack(array)) {
+            return;
+        }
+        ThreadCache cache = localCache();
+        if (cache != null && cache.heap[sizeClass].size() < THREAD_CACHE_SIZE) {
+            cache.heap[sizeClass].addFirst(array);
+        } else {
+            HEAP.offer(sizeClass, array);
+        }
+    }
+
+    // a cleared direct buffer with a capacity of at least minSize
+    public static ByteBuffer acquireDirect(int minSize) {
+        int sizeClass = sizeClass(minSize);
+        if (sizeClass == -1) {
+            return ByteBuffer.allocateDirect(minSize);
+        }
+        ThreadCache cache = localCache();
+        ByteBuffer buffer = cache != null ? cache.direct[sizeClass].pollFirst() : null;
+        if (buffer == null) {
+            buffer = DIRECT.poll(sizeClass);
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (MIN_SHIFT + sizeClass));
+        }
+        track(buffer);
+        return buffer;
+    }
+
+    public static void release(ByteBuffer buffer) {
+        int sizeClass = buffer.isDirect() ? exactClass(buffer.capacity()) : -1;
+        if (sizeClass == -1) {
+            return;
+        }
+        if (!untrack(buffer)) {
+            return;
+        }
+        buffer.clear();
+        ThreadCache cache = localCache();
+        if (cache != null && cache.direct[sizeClass].size() < THREAD_CACHE_SIZE) {
+            cache.direct[sizeClass].addFirst(buffer);
+        } else {
+            DIRECT.offer(sizeClass, buffer);
+        }
+    }
+
+    // null on a virtual thread: there is one per connection
+    // (withVirtualThreads), a cache of its own would only take buffers with
+    // it when it ends, they go to the shared queues instead
+    private static ThreadCache localCache() {
+        Thread thread = Thread.currentThread();
+        return thread.isVirtual() ? null : LOCAL.get();
+    }
+
+    // the smallest class holding size bytes, -1 past the largest
+    private static int sizeClass(int size) {
+        if (size <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    // the class a buffer of exactly this capacity came from, -1 for none
+    private static int exactClass(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            return -1;
+        }
+        int shift = Integer.numberOfTrailingZeros(capacity);
+        return shift < MIN_SHIFT || shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    private static void track(Object buffer) {
+        if (LEAKS != null) {
+            LEAKS.acquired(buffer);
+        }
+    }
+
+    private static boolean untrack(Object buffer) {
+        return LEAKS == null || LEAKS.released(buffer);
+    }
+
+    static boolean leakDetection() {
+        Configuration config = ConfigurationManager.getInstance().getConfig();
+        return config != null && Boolean.TRUE.equals(config.getBufferLeakDetection());
+    }
+}
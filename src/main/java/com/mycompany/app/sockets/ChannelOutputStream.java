@@ -0,0 +1,62 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import com.mycompany.app.Response.ResponseOutputStream;
+
+// Socket output for the blocking transport. Writes go straight to the
+// SocketChannel and files are transferTo()'d to it, which is sendfile on
+// Linux, so their bytes never come up into the JVM.
+public class ChannelOutputStream extends ResponseOutputStream {
+    private final SocketChannel channel;
+
+    public ChannelOutputStream(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        sendBuffer(ByteBuffer.wrap(b, off, len));
+    }
+
+    @Override
+    public void sendBuffer(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // head and body in one writev instead of a write each
+    @Override
+    public void sendBuffers(ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    @Override
+    public void sendFile(FileChannel file, long position, long count) throws IOException {
+        try (file) {
+            long end = position + count;
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, channel);
+                if (sent == 0 && position >= file.size()) {
+                    throw new IOException("File shrank while it was being sent");
+                }
+                position += sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mycompany.app.sockets;
+
+import java.net.Socket;
+
+// called once a connection handed off by the accept loop is done,
+// error is null when the handler finished normally
+@FunctionalInterface
+public interface CompletionCallback {
+    void onComplete(Socket socket, Throwable error);
+
+    CompletionCallback LOG_FAILURES = (socket, error) -> {
+        if (error != null) {
+            error.printStackTrace();
+            System.err.println("Task failed: " + error);
+        }
+    };
+}
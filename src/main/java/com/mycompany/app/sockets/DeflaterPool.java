@@ -0,0 +1,53 @@
+package com.mycompany.app.sockets;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+// Deflaters hold a few hundred KB of native memory each and are costly to set
+// up, the compression code borrows them from here instead of making one per
+// response. nowrap ones (raw deflate, for gzip) and zlib ones are kept apart
+// since that can't be changed on an existing Deflater, the level can. Past
+// MAX_POOLED idle ones the rest are ended right away rather than left for
+// the GC to find.
+public final class DeflaterPool {
+    private static final int MAX_POOLED = 32;
+
+    private static final ConcurrentLinkedQueue<Deflater> RAW = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Deflater> ZLIB = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger RAW_POOLED = new AtomicInteger();
+    private static final AtomicInteger ZLIB_POOLED = new AtomicInteger();
+    private static final LeakTracker LEAKS = BufferArena.leakDetection() ? new LeakTracker("Deflater") : null;
+
+    private DeflaterPool() {
+    }
+
+    public static Deflater acquire(int level, boolean nowrap) {
+        Deflater deflater = (nowrap ? RAW : ZLIB).poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, nowrap);
+        } else {
+            (nowrap ? RAW_POOLED : ZLIB_POOLED).decrementAndGet();
+            deflater.setLevel(level);
+        }
+        if (LEAKS != null) {
+            LEAKS.acquired(deflater);
+        }
+        return deflater;
+    }
+
+    // nowrap as it was acquired with
+    public static void release(Deflater deflater, boolean nowrap) {
+        if (LEAKS != null && !LEAKS.released(deflater)) {
+            return;
+        }
+        deflater.reset();
+        AtomicInteger pooled = nowrap ? RAW_POOLED : ZLIB_POOLED;
+        if (pooled.incrementAndGet() > MAX_POOLED) {
+            pooled.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        (nowrap ? RAW : ZLIB).offer(deflater);
+    }
+}
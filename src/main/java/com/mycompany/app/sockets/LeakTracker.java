@@ -0,0 +1,73 @@
+package com.mycompany.app.sockets;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Debug aid for the pools: remembers where each borrowed object was taken and
+// complains when one is garbage collected without having been given back, or
+// is given back twice. Costs a stack trace per acquire, so it is only on with
+// bufferLeakDetection.
+final class LeakTracker {
+    private final String kind;
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final Set<Tracked> outstanding = ConcurrentHashMap.newKeySet();
+
+    private static final class Tracked extends WeakReference<Object> {
+        private final int hash;
+        private final Throwable acquiredAt;
+
+        Tracked(Object resource, ReferenceQueue<Object> queue, Throwable acquiredAt) {
+            super(resource, queue);
+            this.hash = System.identityHashCode(resource);
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        // the same object, never equal contents: two ByteBuffers with the
+        // same bytes are still two buffers
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            Object resource = get();
+            return other instanceof Tracked tracked && resource != null && resource == tracked.get();
+        }
+    }
+
+    LeakTracker(String kind) {
+        this.kind = kind;
+    }
+
+    void acquired(Object resource) {
+        reportCollected();
+        outstanding.add(new Tracked(resource, collected, new Throwable(kind + " acquired here")));
+    }
+
+    // false for one that isn't out, the pool must not take it back then or
+    // two callers would end up sharing it
+    boolean released(Object resource) {
+        if (!outstanding.remove(new Tracked(resource, null, null))) {
+            new Throwable(kind + " released twice, or it never came from the pool").printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    private void reportCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            if (outstanding.remove(reference)) {
+                System.err.println("LEAK: a pooled " + kind + " was garbage collected without being released");
+                ((Tracked) reference).acquiredAt.printStackTrace();
+            }
+        }
+    }
+}
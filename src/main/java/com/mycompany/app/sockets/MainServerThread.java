@@ -1,44 +1,107 @@
 package com.mycompany.app.sockets;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.concurrent.ExecutionException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import com.mycompany.app.Config.ConfigurationManager;
 import com.mycompany.app.Handlers.HandlerThread;
 import com.mycompany.app.Handlers.HttpDriver;
 
-public class MainServerThread {
-    ServerSocket server;
+public class MainServerThread implements Transport {
+    public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+
+    // a channel rather than a plain ServerSocket so the accepted sockets have
+    // a SocketChannel that files can be transferTo()'d to
+    ServerSocketChannel server;
     ConfigurationManager manager;
     ExecutorService exectuor;
     HttpDriver driver;
+    Semaphore connectionPermits;
+    CompletionCallback callback;
 
     public MainServerThread(ConfigurationManager manager, ExecutorService executor, HttpDriver driver)
             throws IOException {
+        this(manager, executor, driver, DEFAULT_MAX_CONNECTIONS, CompletionCallback.LOG_FAILURES);
+    }
+
+    public MainServerThread(ConfigurationManager manager, ExecutorService executor, HttpDriver driver,
+            int maxConnections, CompletionCallback callback) throws IOException {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1, got " + maxConnections);
+        }
         this.manager = manager;
         this.exectuor = executor;
-        this.server = new ServerSocket(manager.getConfig().getPort());
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(manager.getConfig().getPort()));
         this.driver = driver;
+        this.connectionPermits = new Semaphore(maxConnections);
+        this.callback = callback != null ? callback : CompletionCallback.LOG_FAILURES;
     }
 
+    @Override
     public void start() throws IOException {
         while (true) {
-            Socket socket = server.accept();
-            socket.setSoTimeout(20);
-            Future<?> future = exectuor.submit(new HandlerThread(socket, driver));
-
+            // once maxConnections handlers are in flight we stop accepting, new
+            // clients wait in the kernel backlog until a handler finishes
             try {
-                future.get();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-                System.err.println("Task failed: " + e.getCause());
+                connectionPermits.acquire();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                return;
             }
+
+            Socket socket;
+            try {
+                socket = server.accept().socket();
+                socket.setSoTimeout(manager.getConfig().getKeepAliveTimeout());
+            } catch (IOException e) {
+                connectionPermits.release();
+                if (!server.isOpen()) {
+                    // stop() was called
+                    return;
+                }
+                throw e;
+            }
+            dispatch(socket);
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    private void dispatch(Socket socket) {
+        try {
+            // hand the connection off and go straight back to accept()
+            CompletableFuture.runAsync(new HandlerThread(socket, driver, manager.getConfig()), exectuor)
+                    .whenComplete((ignored, error) -> complete(socket, error));
+        } catch (RejectedExecutionException e) {
+            complete(socket, e);
+        }
+    }
+
+    private void complete(Socket socket, Throwable error) {
+        connectionPermits.release();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        try {
+            callback.onComplete(socket, error);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
         }
     }
 
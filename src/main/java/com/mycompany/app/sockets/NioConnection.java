@@ -0,0 +1,193 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import com.mycompany.app.Errors.HttpRequestError;
+import com.mycompany.app.Handlers.HttpDriver;
+import com.mycompany.app.Request.Request;
+import com.mycompany.app.Request.RequestFramer;
+
+// State of one connection owned by a Reactor, every method here runs on the
+// reactor thread.
+class NioConnection {
+    final SocketChannel channel;
+    final Reactor reactor;
+    SelectionKey key;
+
+    private final RequestFramer framer;
+    private final ArrayDeque<PendingWrite> writeQueue = new ArrayDeque<>();
+    private boolean closed;
+    private boolean inFlight;
+    private boolean keepAlive;
+    // the worker streaming the current response in parts, and how much of
+    // what it handed over is still in writeQueue
+    private NioResponseStream streaming;
+    private long streamedBytes;
+    private int served;
+    private long lastActive = System.currentTimeMillis();
+
+    NioConnection(SocketChannel channel, Reactor reactor) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.framer = new RequestFramer(reactor.maxHeaderSize, reactor.maxBodySize, reactor.streamThreshold);
+        this.framer.setOnDrain(() -> reactor.execute(this::resumeBody));
+    }
+
+    void onReadable() throws IOException {
+        lastActive = System.currentTimeMillis();
+        // only borrowed for this one read, idle connections don't pin any memory
+        ByteBuffer buffer = BufferArena.acquireDirect(Reactor.READ_BUFFER_SIZE);
+        try {
+            int read = channel.read(buffer);
+            if (read == -1) {
+                close(null);
+                return;
+            }
+            buffer.flip();
+            framer.append(buffer);
+        } finally {
+            BufferArena.release(buffer);
+        }
+
+        if (inFlight) {
+            // only happens while a worker streams the body
+            framer.pump();
+            updateReadInterest();
+        } else {
+            dispatchIfComplete();
+        }
+    }
+
+    // while a worker has the request, keep reading only for a streamed body
+    // that still has room in its pipe. Pipelined requests stay in the framer
+    // until the response is out.
+    private void updateReadInterest() {
+        boolean reading = framer.isStreamingBody() && !framer.isBodyBlocked();
+        key.interestOps(reading ? SelectionKey.OP_READ : 0);
+    }
+
+    // the handler made room in a full body pipe
+    private void resumeBody() {
+        if (closed || !inFlight) {
+            return;
+        }
+        try {
+            framer.pump();
+            updateReadInterest();
+        } catch (HttpRequestError e) {
+            close(e);
+        }
+    }
+
+    private void dispatchIfComplete() throws IOException {
+        boolean complete;
+        try {
+            complete = framer.hasRequest();
+        } catch (HttpRequestError e) {
+            key.interestOps(0);
+            inFlight = true;
+            write(ByteBuffer.wrap(HttpDriver.errorResponse(e.getStatusCode())), false);
+            return;
+        }
+        if (complete) {
+            inFlight = true;
+            served++;
+            Request request = framer.takeRequest();
+            updateReadInterest();
+            reactor.dispatch(this, request, served < reactor.maxRequests);
+        }
+    }
+
+    void write(ByteBuffer response, boolean keepAlive) throws IOException {
+        write(List.of(new PendingWrite(response)), keepAlive);
+    }
+
+    void write(List<PendingWrite> response, boolean keepAlive) throws IOException {
+        if (closed) {
+            for (PendingWrite write : response) {
+                write.release();
+            }
+            return;
+        }
+        this.keepAlive = keepAlive;
+        // the worker is done, nobody waits on what is left of a stream
+        streaming = null;
+        writeQueue.addAll(response);
+        onWritable();
+    }
+
+    // part of a response the worker is still writing, the rest follows with
+    // more of these and a write() at the end
+    void writePart(List<PendingWrite> part, long size, NioResponseStream stream) throws IOException {
+        if (closed) {
+            for (PendingWrite write : part) {
+                write.release();
+            }
+            stream.abort();
+            return;
+        }
+        streaming = stream;
+        streamedBytes += size;
+        writeQueue.addAll(part);
+        onWritable();
+    }
+
+    void onWritable() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            if (!writeQueue.peek().writeTo(channel)) {
+                // socket buffer is full, wait for the selector to say it drained
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+        }
+        if (streaming != null) {
+            // all caught up with a response that isn't finished yet
+            streaming.sent(streamedBytes);
+            streamedBytes = 0;
+            updateReadInterest();
+            return;
+        }
+        if (!keepAlive) {
+            close(null);
+            return;
+        }
+        inFlight = false;
+        lastActive = System.currentTimeMillis();
+        key.interestOps(SelectionKey.OP_READ);
+        dispatchIfComplete();
+    }
+
+    boolean isIdleSince(long time) {
+        return !inFlight && lastActive < time;
+    }
+
+    void close(Throwable error) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        framer.abort(new IOException("Connection closed"));
+        if (streaming != null) {
+            streaming.abort();
+        }
+        for (PendingWrite write : writeQueue) {
+            write.release();
+        }
+        writeQueue.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        reactor.closed(this, error);
+    }
+}
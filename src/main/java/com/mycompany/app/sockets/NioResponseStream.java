@@ -0,0 +1,139 @@
+package com.mycompany.app.sockets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mycompany.app.Response.ResponseOutputStream;
+
+// Collects a response on the worker thread for the reactor to write. Plain
+// writes are gathered into one buffer, buffers handed over are queued as they
+// are, files are only queued as ranges and transferTo()'d by the reactor once
+// the socket has room. A streamed body is handed over as it is written with
+// sendPartial(), which waits while more than maxPending bytes of it are still
+// queued on the connection.
+class NioResponseStream extends ResponseOutputStream {
+    private final ArrayList<PendingWrite> writes = new ArrayList<>();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final Reactor reactor;
+    private final NioConnection connection;
+    private final long maxPending;
+    // handed to the connection but not written yet, guarded by this
+    private long pending;
+    private boolean aborted;
+
+    NioResponseStream(Reactor reactor, NioConnection connection, long maxPending) {
+        this.reactor = reactor;
+        this.connection = connection;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void write(int b) {
+        bytes.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        bytes.write(b, off, len);
+    }
+
+    @Override
+    public void sendFile(FileChannel file, long position, long count) {
+        flushBytes();
+        writes.add(new PendingWrite(file, position, count));
+    }
+
+    @Override
+    public void sendBuffer(ByteBuffer buffer) {
+        sendBuffers(buffer);
+    }
+
+    // the reactor hands these to the socket together, a head and its body
+    // don't go out as two writes
+    @Override
+    public void sendBuffers(ByteBuffer... buffers) {
+        flushBytes();
+        writes.add(new PendingWrite(buffers));
+    }
+
+    // runs on the worker, the rest of this class on the reactor thread
+    @Override
+    public void sendPartial() throws IOException {
+        flushBytes();
+        if (writes.isEmpty()) {
+            return;
+        }
+        List<PendingWrite> part = new ArrayList<>(writes);
+        writes.clear();
+        long size = 0;
+        for (PendingWrite write : part) {
+            size += write.remaining();
+        }
+        long handed = size;
+        synchronized (this) {
+            if (aborted) {
+                for (PendingWrite write : part) {
+                    write.release();
+                }
+                throw new IOException("Connection closed while the response was being sent");
+            }
+            pending += size;
+        }
+        reactor.execute(() -> {
+            try {
+                connection.writePart(part, handed, this);
+            } catch (IOException | RuntimeException e) {
+                connection.close(e);
+            }
+        });
+        synchronized (this) {
+            try {
+                while (pending > maxPending && !aborted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while the response was being sent");
+            }
+            if (aborted) {
+                throw new IOException("Connection closed while the response was being sent");
+            }
+        }
+    }
+
+    // the connection wrote size bytes of what sendPartial() handed it
+    synchronized void sent(long size) {
+        pending -= size;
+        notifyAll();
+    }
+
+    // the connection is gone, a worker still streaming gets an IOException
+    synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    List<PendingWrite> finish() {
+        flushBytes();
+        return writes;
+    }
+
+    // the response is never going out, close the files it holds
+    void release() {
+        for (PendingWrite write : writes) {
+            write.release();
+        }
+    }
+
+    private void flushBytes() {
+        if (bytes.size() > 0) {
+            writes.add(new PendingWrite(ByteBuffer.wrap(bytes.toByteArray())));
+            bytes.reset();
+        }
+    }
+}
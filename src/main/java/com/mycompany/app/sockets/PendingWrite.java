@@ -0,0 +1,78 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+// One piece of a response waiting on a NioConnection: bytes, which may be
+// spread over several buffers written with one gathering write, or a range of
+// a file that goes out with transferTo as the socket takes it.
+class PendingWrite {
+    private final ByteBuffer[] buffers;
+    private final FileChannel file;
+    private long position;
+    private final long end;
+
+    PendingWrite(ByteBuffer... buffers) {
+        this.buffers = buffers;
+        this.file = null;
+        this.end = 0;
+    }
+
+    PendingWrite(FileChannel file, long position, long count) {
+        this.buffers = null;
+        this.file = file;
+        this.position = position;
+        this.end = position + count;
+    }
+
+    // bytes still to go
+    long remaining() {
+        if (file != null) {
+            return end - position;
+        }
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    // true once all of it is out, false if the socket filled up first
+    boolean writeTo(SocketChannel channel) throws IOException {
+        if (file == null) {
+            channel.write(buffers);
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        while (position < end) {
+            long sent = file.transferTo(position, end - position, channel);
+            if (sent == 0) {
+                if (position >= file.size()) {
+                    throw new IOException("File shrank while it was being sent");
+                }
+                return false;
+            }
+            position += sent;
+        }
+        release();
+        return true;
+    }
+
+    // closes the file, for when the connection goes away before it was sent
+    void release() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
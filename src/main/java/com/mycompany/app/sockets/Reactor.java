@@ -0,0 +1,166 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Handlers.HttpDriver;
+import com.mycompany.app.Request.Request;
+
+// Event loop for a share of the connections accepted by SelectorServerThread.
+// Reads happen here, only complete requests go to the worker executor and the
+// response comes back to this thread to be written.
+class Reactor implements Runnable {
+    static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private final HttpDriver driver;
+    private final BiConsumer<SocketChannel, Throwable> onClose;
+    private final long keepAliveTimeout;
+    final int maxRequests;
+    final int maxHeaderSize;
+    final int maxBodySize;
+    final int streamThreshold;
+    private final long maxPendingResponseBytes;
+    private long lastSweep = System.currentTimeMillis();
+    private volatile boolean running = true;
+
+    Reactor(ExecutorService workers, HttpDriver driver, BiConsumer<SocketChannel, Throwable> onClose,
+            Configuration config) throws IOException {
+        this.selector = Selector.open();
+        this.workers = workers;
+        this.driver = driver;
+        this.onClose = onClose;
+        this.keepAliveTimeout = config.getKeepAliveTimeout();
+        this.maxRequests = config.getMaxKeepAliveRequests();
+        this.maxHeaderSize = config.getMaxRequestHeaderSize();
+        this.maxBodySize = config.getMaxRequestBodySize();
+        this.streamThreshold = config.getRequestBodyStreamThreshold();
+        this.maxPendingResponseBytes = config.getMaxPendingResponseBytes();
+    }
+
+    void register(SocketChannel channel) {
+        execute(() -> {
+            NioConnection connection = new NioConnection(channel, this);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (ClosedChannelException e) {
+                connection.close(e);
+            }
+        });
+    }
+
+    // runs the task on the reactor thread
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(Math.max(1, Math.min(keepAliveTimeout, 1000)));
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        connection.close(e);
+                    }
+                }
+                closeIdleConnections();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection connection) {
+                    connection.close(null);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // keep-alive connections nobody sent anything on for keepAliveTimeout ms,
+    // the ones waiting on a worker don't count as idle
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < Math.min(keepAliveTimeout, 1000)) {
+            return;
+        }
+        lastSweep = now;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection connection && connection.isIdleSince(now - keepAliveTimeout)) {
+                connection.close(null);
+            }
+        }
+    }
+
+    void dispatch(NioConnection connection, Request request, boolean allowKeepAlive) {
+        try {
+            workers.execute(() -> {
+                NioResponseStream out = new NioResponseStream(this, connection, maxPendingResponseBytes);
+                try {
+                    boolean keepAlive = driver.dispatch(request, out, allowKeepAlive && request.isKeepAlive());
+                    List<PendingWrite> response = out.finish();
+                    execute(() -> {
+                        try {
+                            connection.write(response, keepAlive);
+                        } catch (IOException | RuntimeException e) {
+                            connection.close(e);
+                        }
+                    });
+                } catch (IOException | RuntimeException e) {
+                    out.release();
+                    execute(() -> connection.close(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connection.close(e);
+        }
+    }
+
+    void closed(NioConnection connection, Throwable error) {
+        onClose.accept(connection.channel, error);
+    }
+}
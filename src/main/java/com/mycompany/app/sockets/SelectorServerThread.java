@@ -0,0 +1,101 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Handlers.HttpDriver;
+
+// Non-blocking transport: the thread calling start() accepts connections and
+// spreads them over N reactor threads, each running its own Selector. Idle
+// and slow clients only cost a registered key, the executor only ever sees
+// complete requests.
+public class SelectorServerThread implements Transport {
+    ServerSocketChannel server;
+    ConfigurationManager manager;
+    ExecutorService exectuor;
+    HttpDriver driver;
+    Semaphore connectionPermits;
+    CompletionCallback callback;
+    Reactor[] reactors;
+
+    public SelectorServerThread(ConfigurationManager manager, ExecutorService executor, HttpDriver driver,
+            int reactorCount, int maxConnections, CompletionCallback callback) throws IOException {
+        if (reactorCount < 1) {
+            throw new IllegalArgumentException("reactorCount must be at least 1, got " + reactorCount);
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1, got " + maxConnections);
+        }
+        this.manager = manager;
+        this.exectuor = executor;
+        this.driver = driver;
+        this.connectionPermits = new Semaphore(maxConnections);
+        this.callback = callback != null ? callback : CompletionCallback.LOG_FAILURES;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(manager.getConfig().getPort()));
+        this.reactors = new Reactor[reactorCount];
+        for (int i = 0; i < reactorCount; i++) {
+            reactors[i] = new Reactor(executor, driver, this::complete, manager.getConfig());
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        for (int i = 0; i < reactors.length; i++) {
+            Thread thread = new Thread(reactors[i], "reactor-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int next = 0;
+        try {
+            while (true) {
+                try {
+                    connectionPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                SocketChannel channel;
+                try {
+                    channel = server.accept();
+                    channel.configureBlocking(false);
+                } catch (ClosedChannelException e) {
+                    // stop() was called
+                    connectionPermits.release();
+                    return;
+                } catch (IOException e) {
+                    connectionPermits.release();
+                    throw e;
+                }
+                reactors[next].register(channel);
+                next = (next + 1) % reactors.length;
+            }
+        } finally {
+            for (Reactor reactor : reactors) {
+                reactor.stop();
+            }
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    private void complete(SocketChannel channel, Throwable error) {
+        connectionPermits.release();
+        try {
+            callback.onComplete(channel.socket(), error);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,22 +3,27 @@ package com.mycompany.app.sockets;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.mycompany.app.Config.ConfigurationManager;
+import com.mycompany.app.Errors.HttpRequestError;
 import com.mycompany.app.Errors.HttpServerError;
 import com.mycompany.app.Handlers.HttpDriver;
 import com.mycompany.app.Postgres.JdbcTemplate;
 import com.mycompany.app.Request.RequestHandler;
 import com.mycompany.app.Request.RequestHandlerDB;
-import com.mycompany.app.Response.HttpResponseText;
 import com.mycompany.app.Response.Route;
 
 public class Server {
     private ExecutorService executor;
     private ConfigurationManager manager;
     private HttpDriver driver;
+    private Transport transport;
+    private int reactorThreads;
+    private int maxConnections;
+    private CompletionCallback completionCallback;
     public static JdbcTemplate jdbcTemplate;
     public static HashMap<String, ArrayList<Middleware>> middlewares = new HashMap<>();
 
@@ -26,6 +31,9 @@ public class Server {
         this.executor = builder.executor;
         this.manager = builder.manager;
         this.driver = builder.driver != null ? builder.driver : new HttpDriver();
+        this.reactorThreads = builder.reactorThreads;
+        this.maxConnections = builder.maxConnections;
+        this.completionCallback = builder.completionCallback;
     }
 
     public static class Builder {
@@ -33,6 +41,9 @@ public class Server {
         private ConfigurationManager manager = ConfigurationManager.getInstance();
         private HttpDriver driver;
         private boolean enableDatabase = false;
+        private int reactorThreads = 0;
+        private int maxConnections = MainServerThread.DEFAULT_MAX_CONNECTIONS;
+        private CompletionCallback completionCallback = CompletionCallback.LOG_FAILURES;
 
         public Builder() {
         }
@@ -42,6 +53,13 @@ public class Server {
             return this;
         }
 
+        // one virtual thread per connection, handlers that park on
+        // JdbcTemplate/HikariCP calls don't hold on to a platform thread
+        public Builder withVirtualThreads() {
+            this.executor = Executors.newVirtualThreadPerTaskExecutor();
+            return this;
+        }
+
         public Builder withCachedThreadPool() {
             this.executor = Executors.newCachedThreadPool();
             return this;
@@ -62,6 +80,28 @@ public class Server {
             return this;
         }
 
+        // selector based transport instead of a blocking ServerSocket, slow and
+        // idle connections no longer hold a thread. Raise withMaxConnections
+        // as well if you want tens of thousands of them open.
+        public Builder withNioTransport(int reactorThreads) {
+            this.reactorThreads = reactorThreads;
+            return this;
+        }
+
+        public Builder withNioTransport() {
+            return withNioTransport(Runtime.getRuntime().availableProcessors());
+        }
+
+        public Builder withMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder onCompletion(CompletionCallback completionCallback) {
+            this.completionCallback = completionCallback;
+            return this;
+        }
+
         public Builder enableDatabase() {
             this.enableDatabase = true;
             return this;
@@ -92,9 +132,22 @@ public class Server {
         if (HttpDriver.threadRoutes.size() == 0) {
             throw new HttpServerError("Please add routes to handle the requests");
         }
-        MainServerThread mainThread = new MainServerThread(manager, this.executor, this.driver);
-        HttpResponseText.loadHttpResponseText();
-        mainThread.start();
+        if (reactorThreads > 0) {
+            transport = new SelectorServerThread(manager, this.executor, this.driver,
+                    this.reactorThreads, this.maxConnections, this.completionCallback);
+        } else {
+            transport = new MainServerThread(manager, this.executor, this.driver,
+                    this.maxConnections, this.completionCallback);
+        }
+        driver.compileRoutes();
+        transport.start();
+    }
+
+    public void stop() throws IOException {
+        if (transport != null) {
+            transport.stop();
+        }
+        executor.shutdown();
     }
 
     public void addRoute(String method, String route, RequestHandler handler) {
@@ -125,6 +178,34 @@ public class Server {
         this.driver.addNewRoute(new Route("PUT", route, handler));
     }
 
+    // POST route that streams the request body into a table, copySql being
+    // something like "COPY users (id, name) FROM STDIN WITH (FORMAT csv)".
+    // The upload is never held in memory, it goes to the database as it is
+    // read off the connection. Answers {"rows": n}
+    public void copyIn(String route, String copySql) {
+        post(route, (req, res, jdbcTemplate) -> {
+            long rows;
+            try {
+                rows = jdbcTemplate.copyIn(copySql, req.getBodyStream());
+            } catch (IOException e) {
+                throw new HttpRequestError(400, "Request body could not be read: " + e.getMessage());
+            }
+            res.json(Map.of("rows", rows));
+            return res;
+        });
+    }
+
+    // GET route that streams what copySql exports, like
+    // "COPY users TO STDOUT WITH (FORMAT csv, HEADER)", as a chunked body of
+    // contentType. Rows go out as the database sends them
+    public void copyOut(String route, String copySql, String contentType) {
+        get(route, (req, res, jdbcTemplate) -> {
+            res.setContentType(contentType);
+            res.stream(out -> jdbcTemplate.copyOut(copySql, out));
+            return res;
+        });
+    }
+
     public void use(String path, Middleware middleware) {
         middlewares.compute(path, (key, value) -> {
             if (value == null) {
@@ -0,0 +1,11 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+
+// how connections get accepted and read, the blocking ServerSocket loop in
+// MainServerThread or the selector based SelectorServerThread
+public interface Transport {
+    void start() throws IOException;
+
+    void stop() throws IOException;
+}
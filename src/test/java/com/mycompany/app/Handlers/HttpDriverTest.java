@@ -0,0 +1,53 @@
+package com.mycompany.app.Handlers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Request.RequestFramer;
+
+// the OPTIONS and favicon shortcut still has to read the body it answers
+class HttpDriverTest {
+    private static final String NEXT = "GET /next HTTP/1.1\r\nHost: x\r\n\r\n";
+
+    private final HttpDriver driver = new HttpDriver();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private RequestFramer framer;
+
+    private boolean dispatch(String wire) throws IOException {
+        framer = new RequestFramer(1024, 1 << 20, 16);
+        framer.setRefill(() -> framer.pump() > 0);
+        framer.append(ByteBuffer.wrap(wire.getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(framer.hasRequest());
+        return driver.dispatch(framer.takeRequest(), out, true);
+    }
+
+    private String response() {
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void faviconWithAChunkedBodyKeepsTheConnectionInStep() throws IOException {
+        assertTrue(dispatch("POST /favicon.ico HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "20\r\n" + "x".repeat(32) + "\r\n0\r\n\r\n" + NEXT));
+        assertTrue(response().startsWith("HTTP/1.1 204 No Content\r\n"));
+        assertTrue(response().contains("Connection: keep-alive\r\n"));
+        assertTrue(framer.hasRequest());
+        assertEquals("/next", framer.takeRequest().getPath());
+    }
+
+    @Test
+    void optionsWithABodyTooBigToDiscardClosesTheConnection() throws IOException {
+        String body = "x".repeat(70 * 1024);
+        assertFalse(dispatch("OPTIONS /a HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n" + body));
+        assertTrue(response().startsWith("HTTP/1.1 204 No Content\r\n"));
+        assertTrue(response().contains("Connection: close\r\n"));
+    }
+}
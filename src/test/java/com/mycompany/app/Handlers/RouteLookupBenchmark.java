@@ -0,0 +1,102 @@
+package com.mycompany.app.Handlers;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.mycompany.app.Response.Route;
+
+/**
+ * Finding a route among 1000 registered ones, half static and half with a
+ * :param, with the old scan calling Route.equals on every route and with
+ * RouteTree. The looked up routes are the last ones registered, the worst case
+ * for the scan.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.app.Handlers.RouteLookupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteLookupBenchmark {
+    private static final int ROUTES = 1000;
+
+    private final Route staticTarget = new Route("GET", "/api/v1/resource499/items");
+    private final Route paramTarget = new Route("GET", "/api/v1/resource499/items/42");
+    private HttpDriver driver;
+    private PrintStream err;
+
+    @Setup
+    public void setup() {
+        // Route.equals logs every comparison
+        err = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        HttpDriver.threadRoutes.clear();
+        for (int i = 0; i < ROUTES / 2; i++) {
+            HttpDriver.threadRoutes.add(new Route("GET", "/api/v1/resource" + i + "/items"));
+            HttpDriver.threadRoutes.add(new Route("GET", "/api/v1/resource" + i + "/items/:id"));
+        }
+        driver = new HttpDriver();
+        driver.compileRoutes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        HttpDriver.threadRoutes.clear();
+        System.setErr(err);
+    }
+
+    @Benchmark
+    public Route linearScanStatic() {
+        return scan(staticTarget);
+    }
+
+    @Benchmark
+    public Route linearScanParam() {
+        return scan(paramTarget);
+    }
+
+    @Benchmark
+    public Route treeStatic() {
+        return driver.findRoute(staticTarget);
+    }
+
+    @Benchmark
+    public Route treeParam() {
+        return driver.findRoute(paramTarget);
+    }
+
+    // what HttpDriver.findRoute did before the tree
+    private static Route scan(Route target) {
+        return HttpDriver.threadRoutes.stream()
+                .filter(curr -> curr.equals(target))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouteLookupBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
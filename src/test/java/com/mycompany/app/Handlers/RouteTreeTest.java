@@ -0,0 +1,76 @@
+package com.mycompany.app.Handlers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Response.Route;
+
+class RouteTreeTest {
+    private static Route get(String pattern) {
+        return new Route("GET", pattern, (req, res) -> res);
+    }
+
+    private final RouteTree tree = new RouteTree(List.of(
+            get("/hello"),
+            get("/users/:id"),
+            get("/users/me"),
+            get("/users/:id/posts/:post"),
+            get("/files/*path"),
+            get("/q?id=int"),
+            get("/q")));
+
+    private String pattern(String target) {
+        RouteTree.Match match = tree.find("GET", target);
+        return match == null ? null : match.getRoute().getRoute();
+    }
+
+    @Test
+    void staticRoute() {
+        assertEquals("/hello", pattern("/hello"));
+    }
+
+    @Test
+    void staticSegmentWinsOverParam() {
+        assertEquals("/users/me", pattern("/users/me"));
+        assertEquals("/users/:id", pattern("/users/42"));
+    }
+
+    @Test
+    void paramsAreCaptured() {
+        RouteTree.Match match = tree.find("GET", "/users/7/posts/abc");
+        assertEquals("7", match.getParams().get("id"));
+        assertEquals("abc", match.getParams().get("post"));
+    }
+
+    @Test
+    void wildcardTakesTheRestOfThePath() {
+        RouteTree.Match match = tree.find("GET", "/files/a/b/c.txt");
+        assertEquals("/files/*path", match.getRoute().getRoute());
+        assertEquals("a/b/c.txt", match.getParams().get("path"));
+    }
+
+    @Test
+    void wildcardNeedsAtLeastOneSegment() {
+        assertNull(pattern("/files"));
+    }
+
+    @Test
+    void queryHasToMatchThePattern() {
+        assertEquals("/q?id=int", pattern("/q?id=5"));
+        assertEquals("/q?id=int", pattern("/q?id=-5"));
+        assertEquals("/q", pattern("/q"));
+        assertNull(pattern("/q?id=five"));
+        assertNull(pattern("/q?id=5&x=1"));
+    }
+
+    @Test
+    void unknownPathsAndMethods() {
+        assertNull(pattern("/nope"));
+        assertNull(pattern("/users/1/posts"));
+        assertNull(tree.find("POST", "/hello"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.mycompany.app.Postgres;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+
+// RowMapper against a one row result set made up on the spot, no database
+class RowMapperTest {
+    static class Base {
+        String name;
+        String note;
+
+        private void setName(String name) {
+            this.name = name;
+        }
+
+        void setNote(String note) {
+            this.note = "base " + note;
+        }
+    }
+
+    static class User extends Base {
+        private int id;
+        private Integer age;
+        private boolean active = true;
+
+        User() {
+        }
+
+        private void setId(int id) {
+            this.id = id;
+        }
+
+        protected void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        @Override
+        void setNote(String note) {
+            this.note = "user " + note;
+        }
+
+        static void setIgnored(String value) {
+            throw new AssertionError("static setters aren't properties");
+        }
+    }
+
+    private static ResultSet row(String[] labels, Object[] values) {
+        boolean[] lastNull = { false };
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> labels.length;
+                    case "getColumnLabel" -> labels[(int) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return (ResultSet) Proxy.newProxyInstance(RowMapperTest.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) {
+                        return meta;
+                    }
+                    if (method.getName().equals("wasNull")) {
+                        return lastNull[0];
+                    }
+                    Object value = values[(int) args[0] - 1];
+                    lastNull[0] = value == null;
+                    return switch (method.getName()) {
+                        case "getInt" -> value == null ? 0 : (Integer) value;
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getString", "getObject" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private static User map(String[] labels, Object[] values) throws SQLException {
+        ResultSet rs = row(labels, values);
+        return RowMapper.of(User.class, rs.getMetaData()).map(rs);
+    }
+
+    @Test
+    void privateAndInheritedSettersAreUsed() throws SQLException {
+        User user = map(new String[] { "ID", "name", "age", "active", "note", "ignored", "unknown" },
+                new Object[] { 7, "ada", 36, false, "hi", "x", "y" });
+        assertEquals(7, user.id);
+        assertEquals("ada", user.name);
+        assertEquals(36, user.age);
+        assertEquals(false, user.active);
+        // the override, not the setter it overrides
+        assertEquals("user hi", user.note);
+    }
+
+    @Test
+    void nullLeavesPrimitivesAlone() throws SQLException {
+        User user = map(new String[] { "id", "age", "active", "name" }, new Object[] { null, null, null, null });
+        assertEquals(0, user.id);
+        assertNull(user.age);
+        assertEquals(true, user.active);
+        assertNull(user.name);
+    }
+}
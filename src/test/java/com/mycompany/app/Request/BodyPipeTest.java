@@ -0,0 +1,115 @@
+package com.mycompany.app.Request;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Errors.HttpRequestError;
+
+// the pipe between the connection and a handler reading a streamed body:
+// how much it takes, when it wakes the reactor again and how it ends
+class BodyPipeTest {
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String read(InputStream in, int length) throws IOException {
+        return new String(in.readNBytes(length), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void offerTakesOnlyWhatFits() {
+        BodyPipe pipe = new BodyPipe(8, null, null);
+        assertEquals(8, pipe.offer(ascii("0123456789"), 0, 10));
+        assertTrue(pipe.isFull());
+        assertEquals(0, pipe.offer(ascii("89"), 0, 2));
+    }
+
+    @Test
+    void bytesComeOutInOrderAcrossTheWrap() throws IOException {
+        BodyPipe pipe = new BodyPipe(8, null, null);
+        pipe.offer(ascii("abcdef"), 0, 6);
+        assertEquals("abcd", read(pipe.stream(), 4));
+        assertEquals(6, pipe.offer(ascii("ghijkl"), 0, 6));
+        pipe.finish();
+        assertEquals("efghijkl", new String(pipe.stream().readAllBytes(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void aFullPipeWakesTheReactorOnceItIsHalfEmpty() throws IOException {
+        AtomicInteger drained = new AtomicInteger();
+        BodyPipe pipe = new BodyPipe(8, null, drained::incrementAndGet);
+        pipe.offer(ascii("01234567"), 0, 8);
+        read(pipe.stream(), 3);
+        assertEquals(0, drained.get());
+        read(pipe.stream(), 1);
+        assertEquals(1, drained.get());
+        read(pipe.stream(), 4);
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    void aPipeThatNeverFilledUpDoesNotWakeTheReactor() throws IOException {
+        AtomicInteger drained = new AtomicInteger();
+        BodyPipe pipe = new BodyPipe(8, null, drained::incrementAndGet);
+        pipe.offer(ascii("0123456"), 0, 7);
+        read(pipe.stream(), 7);
+        assertEquals(0, drained.get());
+    }
+
+    @Test
+    void readerWaitsForTheWriter() throws Exception {
+        BodyPipe pipe = new BodyPipe(8, null, null);
+        CompletableFuture<byte[]> body = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipe.stream().readAllBytes();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(body.isDone());
+        pipe.offer(ascii("abc"), 0, 3);
+        pipe.finish();
+        assertArrayEquals(ascii("abc"), body.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failuresReachTheReader() {
+        BodyPipe broken = new BodyPipe(8, null, null);
+        broken.fail(new HttpRequestError(400, "Malformed chunk size"));
+        assertEquals(400, assertThrows(HttpRequestError.class, () -> broken.stream().read()).getStatusCode());
+
+        BodyPipe aborted = new BodyPipe(8, null, null);
+        aborted.fail(new IOException("Connection reset"));
+        assertThrows(IOException.class, () -> aborted.stream().read());
+    }
+
+    @Test
+    void blockingTransportRefillsAnEmptyPipe() throws IOException {
+        byte[] wire = ascii("hello world");
+        int[] sent = { 0 };
+        BodyPipe[] pipe = new BodyPipe[1];
+        pipe[0] = new BodyPipe(4, () -> {
+            if (sent[0] == wire.length) {
+                return false;
+            }
+            sent[0] += pipe[0].offer(wire, sent[0], wire.length - sent[0]);
+            return true;
+        }, null);
+        assertEquals("hello world", read(pipe[0].stream(), wire.length));
+        // the connection closing before the body ended
+        assertThrows(IOException.class, () -> pipe[0].stream().read());
+    }
+}
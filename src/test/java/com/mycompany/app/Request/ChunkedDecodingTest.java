@@ -0,0 +1,159 @@
+package com.mycompany.app.Request;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Errors.HttpRequestError;
+
+// RequestFramer taking chunked bodies apart, whole or a byte at a time, and
+// what it does with broken ones
+class ChunkedDecodingTest {
+    private static final String HEAD = "POST /upload HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n";
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static RequestFramer framer(String wire) {
+        RequestFramer framer = new RequestFramer(1024, 1024, 64);
+        framer.append(ByteBuffer.wrap(ascii(wire)));
+        return framer;
+    }
+
+    private static String body(String chunks) throws IOException {
+        RequestFramer framer = framer(HEAD + chunks);
+        assertTrue(framer.hasRequest());
+        Request request = framer.takeRequest();
+        return new String(request.getBodyStream().readAllBytes(), StandardCharsets.US_ASCII);
+    }
+
+    private static int status(Runnable action) {
+        return assertThrows(HttpRequestError.class, action::run).getStatusCode();
+    }
+
+    @Test
+    void chunksAreJoined() throws IOException {
+        assertEquals("hello world", body("5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void hexSizesAndExtensions() throws IOException {
+        String data = "x".repeat(0x1a);
+        assertEquals(data, body("1A;name=value\r\n" + data + "\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void trailersAreDropped() throws IOException {
+        assertEquals("abc", body("3\r\nabc\r\n0\r\nX-Checksum: 1\r\n\r\n"));
+    }
+
+    @Test
+    void emptyBody() throws IOException {
+        assertEquals("", body("0\r\n\r\n"));
+    }
+
+    @Test
+    void bodyArrivingAByteAtATime() throws IOException {
+        RequestFramer framer = framer(HEAD);
+        assertTrue(framer.hasRequest());
+        Request request = framer.takeRequest();
+        for (byte b : ascii("4\r\nwiki\r\n5\r\npedia\r\n0\r\n\r\n")) {
+            assertTrue(framer.isStreamingBody());
+            framer.append(ByteBuffer.wrap(new byte[] { b }));
+            framer.pump();
+        }
+        assertFalse(framer.isStreamingBody());
+        assertEquals("wikipedia", new String(request.getBodyStream().readAllBytes(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void pipelinedRequestAfterTheBodyStaysBuffered() {
+        RequestFramer framer = framer(HEAD + "3\r\nabc\r\n0\r\n\r\nGET /next HTTP/1.1\r\nHost: x\r\n\r\n");
+        assertTrue(framer.hasRequest());
+        framer.takeRequest();
+        assertTrue(framer.hasRequest());
+        assertEquals("/next", framer.takeRequest().getPath());
+    }
+
+    @Test
+    void sizeThatIsNotHex() {
+        RequestFramer framer = framer(HEAD + "zz\r\nabc\r\n0\r\n\r\n");
+        assertTrue(framer.hasRequest());
+        assertEquals(400, status(framer::takeRequest));
+    }
+
+    @Test
+    void missingSize() {
+        RequestFramer framer = framer(HEAD + ";ext\r\nabc\r\n0\r\n\r\n");
+        assertTrue(framer.hasRequest());
+        assertEquals(400, status(framer::takeRequest));
+    }
+
+    @Test
+    void dataLongerThanItsSize() {
+        RequestFramer framer = framer(HEAD + "3\r\nabcd\r\n0\r\n\r\n");
+        assertTrue(framer.hasRequest());
+        assertEquals(400, status(framer::takeRequest));
+    }
+
+    @Test
+    void sizeLineThatNeverEnds() {
+        RequestFramer framer = framer(HEAD);
+        assertTrue(framer.hasRequest());
+        framer.takeRequest();
+        framer.append(ByteBuffer.wrap(ascii("1".repeat(2000))));
+        assertEquals(400, status(framer::pump));
+    }
+
+    @Test
+    void bodyOverTheLimit() {
+        RequestFramer framer = framer(HEAD + "800\r\n");
+        assertTrue(framer.hasRequest());
+        assertEquals(413, status(framer::takeRequest));
+    }
+
+    @Test
+    void handlerReadingABrokenBodyGetsTheError() {
+        RequestFramer framer = framer(HEAD);
+        assertTrue(framer.hasRequest());
+        Request request = framer.takeRequest();
+        framer.append(ByteBuffer.wrap(ascii("3\r\nabcdef")));
+        assertThrows(HttpRequestError.class, framer::pump);
+        assertThrows(Exception.class, () -> request.getBodyStream().readAllBytes());
+    }
+
+    @Test
+    void contentLengthAlongsideChunkedIsRejected() {
+        RequestFramer framer = framer(
+                "POST /upload HTTP/1.1\r\nHost: x\r\nContent-Length: 3\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "3\r\nabc\r\n0\r\n\r\n");
+        assertEquals(400, status(framer::hasRequest));
+    }
+
+    @Test
+    void transferEncodingWithoutChunkedLastIsRejected() {
+        // would otherwise fall back to Content-Length framing, or chunked
+        // framing of a body that isn't
+        for (String value : new String[] { "gzip", "xchunked", "chunked, gzip" }) {
+            RequestFramer framer = framer("POST /upload HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: " + value
+                    + "\r\nContent-Length: 3\r\n\r\nabc");
+            assertEquals(400, status(framer::hasRequest), value);
+        }
+    }
+
+    @Test
+    void conflictingContentLengthsAreRejected() {
+        RequestFramer framer = framer(
+                "POST /upload HTTP/1.1\r\nHost: x\r\nContent-Length: 5\r\nContent-Length: 100\r\n\r\nhello");
+        assertEquals(400, status(framer::hasRequest));
+    }
+}
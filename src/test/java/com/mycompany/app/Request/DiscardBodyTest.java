@@ -0,0 +1,68 @@
+package com.mycompany.app.Request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+// Request.discardBody dropping what a handler left of a streamed body so the
+// next request on the connection is read from the right byte
+class DiscardBodyTest {
+    private static final String NEXT = "GET /next HTTP/1.1\r\nHost: x\r\n\r\n";
+
+    private RequestFramer framer;
+
+    // works like the blocking transport, whatever is buffered stands in for
+    // the socket
+    private Request take(String wire) {
+        framer = new RequestFramer(1024, 1 << 20, 16);
+        framer.setRefill(() -> framer.pump() > 0);
+        framer.append(ByteBuffer.wrap(wire.getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(framer.hasRequest());
+        return framer.takeRequest();
+    }
+
+    @Test
+    void bufferedBodyHasNothingToDiscard() {
+        Request request = take("POST /a HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc" + NEXT);
+        assertFalse(request.isBodyStreamed());
+        assertTrue(request.discardBody(0));
+    }
+
+    @Test
+    void unreadBodyIsDiscarded() {
+        Request request = take("POST /a HTTP/1.1\r\nContent-Length: 100\r\n\r\n" + "x".repeat(100) + NEXT);
+        assertTrue(request.isBodyStreamed());
+        assertTrue(request.discardBody(1000));
+        assertFalse(request.isBodyStreamed());
+        assertTrue(framer.hasRequest());
+        assertEquals("/next", framer.takeRequest().getPath());
+    }
+
+    @Test
+    void restOfAPartlyReadChunkedBodyIsDiscarded() throws IOException {
+        Request request = take("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "14\r\n" + "y".repeat(20) + "\r\n14\r\n" + "z".repeat(20) + "\r\n0\r\n\r\n" + NEXT);
+        assertEquals(10, request.getBodyStream().readNBytes(10).length);
+        assertTrue(request.discardBody(1000));
+        assertTrue(framer.hasRequest());
+        assertEquals("/next", framer.takeRequest().getPath());
+    }
+
+    @Test
+    void moreThanTheLimitLeftGivesUp() {
+        Request request = take("POST /a HTTP/1.1\r\nContent-Length: 100\r\n\r\n" + "x".repeat(100) + NEXT);
+        assertFalse(request.discardBody(50));
+    }
+
+    @Test
+    void connectionClosingMidBodyGivesUp() {
+        Request request = take("POST /a HTTP/1.1\r\nContent-Length: 100\r\n\r\n" + "x".repeat(40));
+        assertFalse(request.discardBody(1000));
+    }
+}
@@ -0,0 +1,121 @@
+package com.mycompany.app.Request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Errors.HttpRequestError;
+
+class HttpRequestParserTest {
+    private static final byte[] REQUEST = ("POST /users/1?x=2 HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "content-length: 5\r\n"
+            + "X-Empty:\r\n"
+            + "Accept:   text/html  \r\n"
+            + "\r\nhello").getBytes(StandardCharsets.US_ASCII);
+    private static final int HEAD_END = REQUEST.length - 5;
+
+    @Test
+    void wholeHeadAtOnce() {
+        HttpRequestParser parser = new HttpRequestParser();
+        assertEquals(HEAD_END, parser.parse(REQUEST, REQUEST.length));
+        assertTrue(parser.isComplete());
+        assertEquals("POST", parser.method(REQUEST));
+        assertEquals("/users/1?x=2", parser.target(REQUEST));
+        assertEquals("/users/1", parser.pathOnly(REQUEST));
+        assertEquals("x=2", parser.query(REQUEST));
+        assertEquals("HTTP/1.1", parser.version(REQUEST));
+        assertEquals(5, parser.getContentLength());
+        assertFalse(parser.isChunked());
+    }
+
+    @Test
+    void headersAreTrimmedAndFoundIgnoringCase() {
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.parse(REQUEST, REQUEST.length);
+        assertEquals(4, parser.getHeaderCount());
+        assertEquals("text/html", parser.headerValue(REQUEST, parser.indexOfHeader(REQUEST, "ACCEPT")));
+        assertEquals("", parser.headerValue(REQUEST, parser.indexOfHeader(REQUEST, "x-empty")));
+        assertEquals(-1, parser.indexOfHeader(REQUEST, "Cookie"));
+    }
+
+    @Test
+    void headArrivingAByteAtATime() {
+        HttpRequestParser parser = new HttpRequestParser();
+        for (int limit = 1; limit < HEAD_END; limit++) {
+            assertEquals(-1, parser.parse(REQUEST, limit));
+        }
+        assertEquals(HEAD_END, parser.parse(REQUEST, HEAD_END));
+        assertEquals("/users/1", parser.pathOnly(REQUEST));
+        assertEquals(5, parser.getContentLength());
+    }
+
+    @Test
+    void strayLineBreaksBeforeTheRequestLine() {
+        byte[] request = "\r\n\r\nGET / HTTP/1.1\r\nHost: x\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser parser = new HttpRequestParser();
+        assertEquals(request.length, parser.parse(request, request.length));
+        assertEquals("GET", parser.method(request));
+        assertEquals(-1, parser.getContentLength());
+    }
+
+    @Test
+    void chunkedTransferEncoding() {
+        byte[] request = "POST / HTTP/1.1\r\nTransfer-Encoding: Chunked\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.parse(request, request.length);
+        assertTrue(parser.isChunked());
+    }
+
+    @Test
+    void invalidContentLength() {
+        for (String value : new String[] { "", "-1", "12a", "1234567890123456789" }) {
+            byte[] request = ("POST / HTTP/1.1\r\nContent-Length: " + value + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            HttpRequestError error = assertThrows(HttpRequestError.class,
+                    () -> new HttpRequestParser().parse(request, request.length), value);
+            assertEquals(400, error.getStatusCode());
+        }
+    }
+
+    private static HttpRequestParser parsed(String head) {
+        byte[] request = head.getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser parser = new HttpRequestParser();
+        assertEquals(request.length, parser.parse(request, request.length));
+        return parser;
+    }
+
+    private static int status(String head) {
+        return assertThrows(HttpRequestError.class, () -> parsed(head), head).getStatusCode();
+    }
+
+    @Test
+    void repeatedContentLength() {
+        assertEquals(5, parsed("POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 5\r\n\r\n")
+                .getContentLength());
+        assertEquals(400, status("POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 100\r\n\r\n"));
+    }
+
+    @Test
+    void chunkedHasToBeTheFinalCoding() {
+        for (String value : new String[] { "chunked", "CHUNKED ", " , chunked" }) {
+            assertTrue(parsed("POST / HTTP/1.1\r\nTransfer-Encoding: " + value + "\r\n\r\n").isChunked(), value);
+        }
+        for (String value : new String[] { "xchunked", "chunkedx", "chunked, gzip", "chunked, chunked", "" }) {
+            assertEquals(400, status("POST / HTTP/1.1\r\nTransfer-Encoding: " + value + "\r\n\r\n"), value);
+        }
+        assertEquals(400, status("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\nTransfer-Encoding: gzip\r\n\r\n"));
+    }
+
+    @Test
+    void codingsOtherThanChunkedAreNotImplemented() {
+        assertEquals(501, status("POST / HTTP/1.1\r\nTransfer-Encoding: gzip, chunked\r\n\r\n"));
+        assertEquals(501, status("POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\nTransfer-Encoding: chunked\r\n\r\n"));
+    }
+}
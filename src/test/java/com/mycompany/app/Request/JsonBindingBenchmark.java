@@ -0,0 +1,102 @@
+package com.mycompany.app.Request;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import tools.jackson.databind.DatabindException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Binding a POST body to a class with three @RequestParmaterRequired fields,
+ * the way getBodyAsJson(Class) used to (a mapper and a parse per required
+ * field, then another mapper and parse to bind) and through JsonBinding.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.app.Request.JsonBindingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBindingBenchmark {
+
+    public static class SignUp {
+        @RequestParmaterRequired
+        public String username;
+        @RequestParmaterRequired
+        public String email;
+        @RequestParmaterRequired
+        public String password;
+        public String referrer;
+    }
+
+    private static final String BODY = "{\"username\":\"mohamed\",\"email\":\"m@example.com\","
+            + "\"password\":\"hunter2\",\"referrer\":\"newsletter\"}";
+
+    private final byte[] raw = ("POST /signup HTTP/1.1\r\n" +
+            "Host: localhost:8001\r\n" +
+            "Content-Type: application/json\r\n" +
+            "Content-Length: " + BODY.length() + "\r\n" +
+            "\r\n" + BODY).getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public SignUp perFieldParse() {
+        return legacyBind(new Request(raw), SignUp.class);
+    }
+
+    @Benchmark
+    public SignUp cachedBinding() {
+        return new Request(raw).getBodyAsJson(SignUp.class);
+    }
+
+    // what getBodyAsJson(Class) did before JsonBinding
+    private static <T> T legacyBind(Request request, Class<T> clazz) {
+        for (Field field : clazz.getFields()) {
+            for (Annotation annotation : field.getAnnotations()) {
+                if (annotation instanceof RequestParmaterRequired) {
+                    ObjectMapper om = new ObjectMapper();
+                    try {
+                        JsonNode jsonNode = om.readTree(request.getRequestBody());
+                        if (!jsonNode.has(field.getName())) {
+                            return null;
+                        }
+                    } catch (DatabindException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        try {
+            ObjectMapper om = new ObjectMapper();
+            return om.readValue(request.getRequestBody(), clazz);
+        } catch (DatabindException e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonBindingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
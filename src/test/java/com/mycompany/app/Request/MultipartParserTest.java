@@ -0,0 +1,126 @@
+package com.mycompany.app.Request;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Config.Configuration;
+import com.mycompany.app.Errors.HttpRequestError;
+
+// the boundary search, mostly where it is hard: boundaries split across reads
+// and window refills, and data that almost looks like a boundary
+class MultipartParserTest {
+    private static final String BOUNDARY = "----form7MA4YWxk";
+
+    private List<Part> parts = List.of();
+
+    @AfterEach
+    void deleteParts() {
+        for (Part part : parts) {
+            part.delete();
+        }
+    }
+
+    private static byte[] body(Object... fieldsAndValues) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("preamble that is ignored\r\n".getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            out.write(("--" + BOUNDARY + "\r\n" + fieldsAndValues[i] + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            Object value = fieldsAndValues[i + 1];
+            out.write(value instanceof byte[] bytes ? bytes : value.toString().getBytes(StandardCharsets.UTF_8));
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write(("--" + BOUNDARY + "--\r\nepilogue").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private List<Part> parse(InputStream in) throws IOException {
+        parts = new MultipartParser(in, BOUNDARY, new Configuration()).parse();
+        return parts;
+    }
+
+    // hands out at most n bytes per read
+    private static InputStream trickle(byte[] data, int n) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, n));
+            }
+        };
+    }
+
+    @Test
+    void fieldsAndFiles() throws IOException {
+        byte[] body = body(
+                "Content-Disposition: form-data; name=\"title\"", "héllo",
+                "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\nContent-Type: text/plain",
+                "file contents");
+        List<Part> parts = parse(new ByteArrayInputStream(body));
+        assertEquals(2, parts.size());
+        assertEquals("title", parts.get(0).getName());
+        assertNull(parts.get(0).getFilename());
+        assertEquals("héllo", parts.get(0).getString());
+        assertEquals("a.txt", parts.get(1).getFilename());
+        assertEquals("text/plain", parts.get(1).getContentType());
+        assertEquals("file contents", parts.get(1).getString());
+    }
+
+    @Test
+    void dataThatAlmostLooksLikeTheBoundary() throws IOException {
+        String tricky = "a\r\n--" + BOUNDARY.substring(0, 10) + "x\r\n-" + BOUNDARY + "\r\n-\r";
+        List<Part> parts = parse(new ByteArrayInputStream(
+                body("Content-Disposition: form-data; name=\"f\"", tricky)));
+        assertEquals(1, parts.size());
+        assertEquals(tricky, parts.get(0).getString());
+    }
+
+    @Test
+    void junkAfterADelimiter() throws IOException {
+        byte[] body = body("Content-Disposition: form-data; name=\"f\"", "a\r\n--" + BOUNDARY + "-not");
+        HttpRequestError error = assertThrows(HttpRequestError.class, () -> parse(new ByteArrayInputStream(body)));
+        assertEquals(400, error.getStatusCode());
+    }
+
+    @Test
+    void partsBiggerThanTheWindowReadInSmallPieces() throws IOException {
+        byte[] big = new byte[100_000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = (byte) (i % 251);
+        }
+        byte[] body = body(
+                "Content-Disposition: form-data; name=\"big\"; filename=\"big.bin\"", big,
+                "Content-Disposition: form-data; name=\"after\"", "x");
+        for (int n : new int[] { 1, 7, 4096, 70_000 }) {
+            List<Part> parts = parse(trickle(body, n));
+            assertEquals(2, parts.size(), "reads of " + n);
+            assertArrayEquals(big, parts.get(0).getBytes(), "reads of " + n);
+            assertEquals("x", parts.get(1).getString(), "reads of " + n);
+            deleteParts();
+        }
+    }
+
+    @Test
+    void partWithoutName() throws IOException {
+        byte[] body = body("Content-Disposition: form-data", "x");
+        HttpRequestError error = assertThrows(HttpRequestError.class, () -> parse(new ByteArrayInputStream(body)));
+        assertEquals(400, error.getStatusCode());
+    }
+
+    @Test
+    void invalidBoundary() {
+        assertThrows(HttpRequestError.class,
+                () -> new MultipartParser(InputStream.nullInputStream(), "", new Configuration()));
+    }
+}
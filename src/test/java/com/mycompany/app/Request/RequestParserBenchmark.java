@@ -0,0 +1,85 @@
+package com.mycompany.app.Request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The old RequestParser pipeline (decode the whole request to a String, then
+ * seven BiFunctions each re-splitting it) against HttpRequestParser over the
+ * raw bytes.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.app.Request.RequestParserBenchmark}, the gc
+ * profiler is on so {@code gc.alloc.rate.norm} gives the bytes allocated per
+ * parsed request next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParserBenchmark {
+    private static final String BODY = "{\"username\":\"mohamed\",\"password\":\"x\"}";
+
+    private final byte[] raw = ("POST /api/users/42?sort=name&limit=20 HTTP/1.1\r\n" +
+            "Host: localhost:8001\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)\r\n" +
+            "Accept: application/json, text/plain, */*\r\n" +
+            "Accept-Language: en-US,en;q=0.9\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Content-Type: application/json\r\n" +
+            "Content-Length: " + BODY.getBytes(StandardCharsets.UTF_8).length + "\r\n" +
+            "Cookie: session=8f14e45fceea167a5a36dedd4bea2543; theme=dark\r\n" +
+            "Connection: keep-alive\r\n" +
+            "\r\n" +
+            BODY).getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Request legacyPipeline() {
+        Request request = new Request();
+        Request.requestPropertiesAssigner(new String(raw, StandardCharsets.UTF_8), request);
+        return request;
+    }
+
+    // only the single pass, nothing decoded yet
+    @Benchmark
+    public Request singlePassParse() {
+        return new Request(raw);
+    }
+
+    // single pass plus reading what the legacy pipeline fills in eagerly
+    @Benchmark
+    public void singlePassParseAndRead(Blackhole blackhole) {
+        Request request = new Request(raw);
+        blackhole.consume(request.getMethod());
+        blackhole.consume(request.getPath());
+        blackhole.consume(request.getHeaders());
+        blackhole.consume(request.getParams());
+        blackhole.consume(request.getCookies());
+        blackhole.consume(request.getContentType());
+        blackhole.consume(request.getRequestBody());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RequestParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
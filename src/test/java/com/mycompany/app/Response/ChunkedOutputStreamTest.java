@@ -0,0 +1,184 @@
+package com.mycompany.app.Response;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+// chunk framing, and that only a body which completed gets the last chunk
+class ChunkedOutputStreamTest {
+    private static final byte[] LAST_CHUNK = ascii("0\r\n\r\n");
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // the chunks in wire, which has to end with the last chunk
+    private static List<byte[]> chunks(byte[] wire) {
+        List<byte[]> chunks = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int lineEnd = indexOfCrlf(wire, pos);
+            int size = Integer.parseInt(new String(wire, pos, lineEnd - pos, StandardCharsets.US_ASCII), 16);
+            pos = lineEnd + 2;
+            if (size == 0) {
+                assertEquals(wire.length, pos + 2, "bytes after the last chunk");
+                assertEquals('\r', wire[pos]);
+                return chunks;
+            }
+            chunks.add(Arrays.copyOfRange(wire, pos, pos + size));
+            pos += size;
+            assertEquals('\r', wire[pos]);
+            assertEquals('\n', wire[pos + 1]);
+            pos += 2;
+        }
+    }
+
+    private static int indexOfCrlf(byte[] wire, int from) {
+        for (int i = from; i + 1 < wire.length; i++) {
+            if (wire[i] == '\r' && wire[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new AssertionError("no CRLF after " + from);
+    }
+
+    private static byte[] join(List<byte[]> chunks) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        chunks.forEach(joined::writeBytes);
+        return joined.toByteArray();
+    }
+
+    private static boolean endsWith(byte[] wire, byte[] suffix) {
+        return wire.length >= suffix.length
+                && Arrays.equals(wire, wire.length - suffix.length, wire.length, suffix, 0, suffix.length);
+    }
+
+    @Test
+    void flushSendsWhatIsThereAsAChunk() throws IOException {
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, 4096, true);
+        chunks.write(ascii("hello"));
+        assertEquals(0, out.size());
+        chunks.flush();
+        assertEquals("5\r\nhello\r\n", out.toString(StandardCharsets.US_ASCII));
+        chunks.write(' ');
+        chunks.write(ascii("world"));
+        chunks.close();
+        assertEquals("5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void smallWritesAreCollectedIntoFullChunks() throws IOException {
+        byte[] data = new byte[20_000];
+        Arrays.fill(data, (byte) 'x');
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, 4096, true);
+        for (int i = 0; i < data.length; i += 100) {
+            chunks.write(data, i, 100);
+        }
+        chunks.close();
+        List<byte[]> decoded = chunks(out.toByteArray());
+        assertArrayEquals(data, join(decoded));
+        // every chunk but the last one is full, and fits in the buffer with its framing
+        int size = decoded.get(0).length;
+        assertTrue(size <= 4096);
+        for (int i = 0; i < decoded.size() - 1; i++) {
+            assertEquals(size, decoded.get(i).length);
+        }
+    }
+
+    @Test
+    void aBigWriteBecomesAChunkOfItsOwn() throws IOException {
+        byte[] big = new byte[10_000];
+        Arrays.fill(big, (byte) 'y');
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, 4096, true);
+        chunks.write(ascii("ab"));
+        chunks.write(big);
+        chunks.close();
+        List<byte[]> decoded = chunks(out.toByteArray());
+        assertEquals(2, decoded.size());
+        assertArrayEquals(ascii("ab"), decoded.get(0));
+        assertArrayEquals(big, decoded.get(1));
+    }
+
+    @Test
+    void http10BodyGoesOutAsItIs() throws IOException {
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, 4096, false);
+        chunks.write(ascii("plain "));
+        chunks.flush();
+        chunks.write(ascii("bytes"));
+        chunks.close();
+        assertEquals("plain bytes", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void releaseDoesNotEndTheBody() throws IOException {
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, 4096, true);
+        chunks.write(ascii("cut"));
+        chunks.flush();
+        chunks.release();
+        chunks.close();
+        assertEquals("3\r\ncut\r\n", out.toString(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> chunks.write('x'));
+    }
+
+    private byte[] writeStreamed(StreamingBody body, String encoding) throws IOException {
+        Response response = new Response();
+        response.setContentType("text/plain");
+        response.stream(body);
+        response.setContentEncoding(encoding);
+        out.reset();
+        ResponseWriter.write(out, response);
+        byte[] wire = out.toByteArray();
+        String head = new String(wire, StandardCharsets.US_ASCII);
+        int bodyStart = head.indexOf("\r\n\r\n") + 4;
+        assertTrue(head.substring(0, bodyStart).contains("\r\nTransfer-Encoding: chunked\r\n"));
+        return Arrays.copyOfRange(wire, bodyStart, wire.length);
+    }
+
+    @Test
+    void aBodyThatClosesItsStreamStillGetsOneLastChunk() throws IOException {
+        byte[] body = writeStreamed(out -> {
+            out.write(ascii("done"));
+            out.close();
+        }, null);
+        assertArrayEquals(ascii("done"), join(chunks(body)));
+    }
+
+    @Test
+    void aBodyThatFailsGetsNoLastChunk() {
+        IOException error = assertThrows(IOException.class, () -> writeStreamed(out -> {
+            out.write(ascii("partial"));
+            out.flush();
+            // what Jackson does on its way out of an error
+            out.close();
+            throw new IllegalStateException("row 2 broke");
+        }, null));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        byte[] wire = out.toByteArray();
+        assertTrue(new String(wire, StandardCharsets.US_ASCII).endsWith("7\r\npartial\r\n"));
+        assertFalse(endsWith(wire, LAST_CHUNK));
+    }
+
+    @Test
+    void compressedBodyIsFinishedBeforeTheLastChunk() throws IOException {
+        String text = "line of text\n".repeat(500);
+        byte[] body = writeStreamed(out -> out.write(text.getBytes(StandardCharsets.UTF_8)), "gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(join(chunks(body))))) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
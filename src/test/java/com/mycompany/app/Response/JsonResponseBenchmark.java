@@ -0,0 +1,82 @@
+package com.mycompany.app.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Turning a list of 100 small objects into the bytes of a JSON response body,
+ * the way Response.json() used to (a new ObjectMapper, a String, then UTF-8)
+ * and with the shared mapper and per type ObjectWriter it uses now.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.app.Response.JsonResponseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonResponseBenchmark {
+
+    public static class User {
+        public long id;
+        public String name;
+        public String email;
+        public List<String> tags;
+    }
+
+    private List<User> users;
+
+    @Setup
+    public void setup() {
+        users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            User user = new User();
+            user.id = i;
+            user.name = "user " + i + " é";
+            user.email = "user" + i + "@example.com";
+            user.tags = List.of("a", "b", "tag" + i);
+            users.add(user);
+        }
+    }
+
+    @Benchmark
+    public byte[] mapperPerCall() {
+        String value = new ObjectMapper().writeValueAsString(users);
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] sharedWriter() {
+        Response response = new Response();
+        response.json(users);
+        return response.encodedBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
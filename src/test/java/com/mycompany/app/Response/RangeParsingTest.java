@@ -0,0 +1,96 @@
+package com.mycompany.app.Response;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+// Response.parseRanges against a 1000 byte body: null means the header is
+// ignored and the whole body goes out, empty means a 416
+class RangeParsingTest {
+    private static final long LENGTH = 1000;
+
+    private static List<long[]> parse(String header) {
+        return Response.parseRanges(header, LENGTH);
+    }
+
+    private static void assertRanges(List<long[]> ranges, long[]... expected) {
+        assertEquals(expected.length, ranges.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], ranges.get(i));
+        }
+    }
+
+    @Test
+    void closedRange() {
+        assertRanges(parse("bytes=0-99"), new long[] { 0, 99 });
+    }
+
+    @Test
+    void lastPastTheEndIsClamped() {
+        assertRanges(parse("bytes=900-5000"), new long[] { 900, 999 });
+    }
+
+    @Test
+    void openEndedRangeRunsToTheEnd() {
+        assertRanges(parse("bytes=900-"), new long[] { 900, 999 });
+    }
+
+    @Test
+    void suffixIsTheFinalBytes() {
+        assertRanges(parse("bytes=-50"), new long[] { 950, 999 });
+    }
+
+    @Test
+    void suffixLongerThanTheBodyIsAllOfIt() {
+        assertRanges(parse("bytes=-5000"), new long[] { 0, 999 });
+    }
+
+    @Test
+    void severalRangesKeepTheirOrder() {
+        assertRanges(parse("bytes=0-0, 500-501,-1"),
+                new long[] { 0, 0 }, new long[] { 500, 501 }, new long[] { 999, 999 });
+    }
+
+    @Test
+    void rangesStartingPastTheEndAreUnsatisfiable() {
+        assertTrue(parse("bytes=1000-1100").isEmpty());
+        assertTrue(parse("bytes=1000-").isEmpty());
+        assertTrue(parse("bytes=-0").isEmpty());
+    }
+
+    @Test
+    void unsatisfiableRangesAreDroppedFromTheRest() {
+        assertRanges(parse("bytes=2000-2001, 10-19"), new long[] { 10, 19 });
+    }
+
+    @Test
+    void lastBeforeFirstIsIgnored() {
+        assertNull(parse("bytes=50-10"));
+    }
+
+    @Test
+    void atMostSixteenRanges() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 16; i++) {
+            header.append(',').append(i).append('-').append(i);
+        }
+        assertEquals(16, parse(header.toString()).size());
+        header.append(",16-16");
+        assertNull(parse(header.toString()));
+    }
+
+    @Test
+    void malformedHeadersAreIgnored() {
+        assertNull(parse("items=0-99"));
+        assertNull(parse("bytes=5"));
+        assertNull(parse("bytes=a-b"));
+        assertNull(parse("bytes=-1-2"));
+        assertNull(parse("bytes=--5"));
+        assertNull(parse("bytes=+1-5"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.mycompany.app.Response;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.mycompany.app.Request.Request;
+
+// which responses ResponseCompression touches, with the default settings:
+// on, from 1024 bytes
+class ResponseCompressionTest {
+    private static final String JSON = "[" + "{\"id\":1,\"name\":\"a row\"},".repeat(200) + "{}]";
+
+    private static Request request(String acceptEncoding) {
+        String head = "GET /rows HTTP/1.1\r\nHost: x\r\n"
+                + (acceptEncoding == null ? "" : "Accept-Encoding: " + acceptEncoding + "\r\n") + "\r\n";
+        return new Request(head.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Response json(int status) {
+        Response response = new Response();
+        response.setStatusCode(status);
+        response.setContentType("application/json");
+        response.setBody(JSON);
+        return response;
+    }
+
+    private static void assertUntouched(Response response) {
+        assertNull(response.getResponseHeaders().get("Content-Encoding"));
+        assertNull(response.getContentEncoding());
+    }
+
+    @Test
+    void gzipWhenTheClientTakesIt() throws IOException {
+        Response response = json(200);
+        response.setHeader("ETag", "\"v1\"");
+        ResponseCompression.apply(response, request("deflate, gzip;q=0.8"));
+        assertEquals("gzip", response.getResponseHeaders().get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getResponseHeaders().get("Vary"));
+        assertEquals("\"v1-gzip\"", response.getResponseHeaders().get("ETag"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.encodedBody()))) {
+            assertArrayEquals(JSON.getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void deflateOtherwise() throws IOException {
+        Response response = json(200);
+        ResponseCompression.apply(response, request("deflate"));
+        assertEquals("deflate", response.getResponseHeaders().get("Content-Encoding"));
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(response.encodedBody()))) {
+            assertArrayEquals(JSON.getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void noAcceptableEncodingStillVaries() {
+        for (String accept : new String[] { null, "br", "gzip;q=0, deflate;q=0" }) {
+            Response response = json(200);
+            ResponseCompression.apply(response, request(accept));
+            assertUntouched(response);
+            assertEquals("Accept-Encoding", response.getResponseHeaders().get("Vary"));
+            assertEquals(JSON, response.getBody());
+        }
+    }
+
+    @Test
+    void statusesWithoutABodyToCompressAreSkipped() {
+        for (int status : new int[] { 204, 206, 304, 101 }) {
+            Response response = json(status);
+            ResponseCompression.apply(response, request("gzip"));
+            assertUntouched(response);
+            assertNull(response.getResponseHeaders().get("Vary"), "status " + status);
+            assertEquals(JSON, response.getBody());
+        }
+    }
+
+    @Test
+    void smallOrBinaryOrEncodedBodiesAreSkipped() {
+        Response small = json(200);
+        small.setBody("{\"ok\":true}");
+        ResponseCompression.apply(small, request("gzip"));
+        assertUntouched(small);
+
+        Response image = json(200);
+        image.setContentType("image/png");
+        ResponseCompression.apply(image, request("gzip"));
+        assertUntouched(image);
+
+        Response encoded = json(200);
+        encoded.setHeader("Content-Encoding", "br");
+        ResponseCompression.apply(encoded, request("gzip"));
+        assertEquals("br", encoded.getResponseHeaders().get("Content-Encoding"));
+        assertEquals(JSON, encoded.getBody());
+    }
+
+    @Test
+    void existingVaryIsKept() {
+        Response response = json(200);
+        response.setHeader("Vary", "Origin");
+        ResponseCompression.apply(response, request("gzip"));
+        assertEquals("Origin, Accept-Encoding", response.getResponseHeaders().get("Vary"));
+    }
+
+    @Test
+    void streamedBodyIsCompressedOnItsWayOut() {
+        Response response = new Response();
+        response.setContentType("text/csv");
+        response.stream(out -> out.write(1));
+        ResponseCompression.apply(response, request("gzip"));
+        assertEquals("gzip", response.getContentEncoding());
+        assertNotNull(response.getStreamingBody());
+    }
+}
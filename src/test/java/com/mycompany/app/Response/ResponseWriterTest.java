@@ -0,0 +1,108 @@
+package com.mycompany.app.Response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mycompany.app.Request.Request;
+
+// what ResponseWriter puts on the wire, head and body
+class ResponseWriterTest {
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private String write(Response response) throws IOException {
+        out.reset();
+        ResponseWriter.write(out, response);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String head(String written) {
+        return written.substring(0, written.indexOf("\r\n\r\n") + 4);
+    }
+
+    private static Request request(String head) {
+        return new Request(("GET /index.html HTTP/1.1\r\nHost: x\r\n" + head + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void headAndBodyInOneGo() throws IOException {
+        Response response = new Response();
+        response.setContentType("text/plain");
+        response.setKeepAlive(true);
+        response.setHeader("X-Trace", "abc");
+        response.setBody("hello");
+        String written = write(response);
+
+        assertTrue(written.startsWith("HTTP/1.1 200 OK\r\nDate: "), written);
+        assertTrue(written.matches("(?s).*\r\nDate: \\w{3}, \\d{2} \\w{3} \\d{4} \\d{2}:\\d{2}:\\d{2} GMT\r\n.*"), written);
+        assertTrue(written.contains("\r\nContent-Type: text/plain; charset=UTF-8\r\n"));
+        assertTrue(written.contains("\r\nContent-Length: 5\r\n"));
+        assertTrue(written.contains("\r\nConnection: keep-alive\r\n"));
+        assertTrue(written.contains("\r\nX-Trace: abc\r\n"));
+        assertTrue(written.endsWith("\r\n\r\nhello"));
+    }
+
+    @Test
+    void contentLengthCountsEncodedBytes() throws IOException {
+        Response response = new Response();
+        response.setBody("héllo ✓");
+        String written = write(response);
+        assertTrue(written.contains("\r\nContent-Length: 10\r\n"), written);
+        assertTrue(written.endsWith("\r\n\r\nhéllo ✓"));
+    }
+
+    @Test
+    void commonHeadersAreNotAddedTwice() throws IOException {
+        Response response = new Response();
+        write(response);
+        String written = write(response);
+        assertEquals(written.indexOf("X-Powered-By"), written.lastIndexOf("X-Powered-By"));
+        assertFalse(response.getResponseHeaders().containsKey("X-Powered-By"));
+    }
+
+    @Test
+    void connectionCloseFromTheHandlerWins() throws IOException {
+        Response response = new Response();
+        response.setKeepAlive(true);
+        response.setHeader("Connection", "close");
+        out.reset();
+        assertFalse(ResponseWriter.write(out, response));
+        String written = out.toString(StandardCharsets.UTF_8);
+        assertTrue(written.contains("\r\nConnection: close\r\n"));
+        assertEquals(written.indexOf("Connection:"), written.lastIndexOf("Connection:"));
+    }
+
+    @Test
+    void notModifiedIsAHeadAlone() throws IOException {
+        Path base = Files.createDirectory(tempDir.toRealPath().resolve("www"));
+        Files.writeString(base.resolve("index.html"), "<p>hello</p>");
+        Response response = new Response();
+        response.setContentType("text/html");
+        response.setAsset(new StaticAssetCache(base, 1000, 10_000).get("/index.html"));
+        response.prepareFileBody(request(""));
+        String etag = response.getResponseHeaders().get("ETag");
+
+        response.prepareFileBody(request("If-None-Match: " + etag + "\r\n"));
+        assertEquals(304, response.getStatusCode());
+        String written = write(response);
+        assertTrue(written.startsWith("HTTP/1.1 304 Not Modified\r\n"), written);
+        assertEquals(head(written), written);
+        assertTrue(written.contains("\r\nETag: " + etag + "\r\n"));
+        assertTrue(written.contains("\r\nLast-Modified: "));
+        assertFalse(written.contains("Content-Length"));
+        assertFalse(written.contains("Content-Type"));
+        assertFalse(written.contains("Transfer-Encoding"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.mycompany.app.Response;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.mycompany.app.Errors.FileNotFound;
+
+// no watcher started here, so a hit checks the file's size and mtime
+class StaticAssetCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private Path base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        base = Files.createDirectory(tempDir.toRealPath().resolve("www"));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = base.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void hitsAreServedFromMemory() throws IOException {
+        write("a.txt", "hello");
+        StaticAssetCache cache = new StaticAssetCache(base, 1000, 10_000);
+        StaticAssetCache.Asset asset = cache.get("/a.txt");
+        assertSame(asset, cache.get("/a.txt"));
+        assertEquals("hello", new String(bytes(asset.body(false)), StandardCharsets.UTF_8));
+        assertEquals(5, cache.getTotalSize());
+    }
+
+    @Test
+    void filesAboveTheLimitAreNotCached() throws IOException {
+        write("big.txt", "x".repeat(101));
+        StaticAssetCache cache = new StaticAssetCache(base, 100, 10_000);
+        assertNull(cache.get("/big.txt"));
+        assertEquals(0, cache.getTotalSize());
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirst() throws IOException {
+        for (String name : new String[] { "a.bin", "b.bin", "c.bin" }) {
+            write(name, "x".repeat(100));
+        }
+        StaticAssetCache cache = new StaticAssetCache(base, 1000, 250);
+        StaticAssetCache.Asset a = cache.get("/a.bin");
+        StaticAssetCache.Asset b = cache.get("/b.bin");
+        assertSame(a, cache.get("/a.bin"));
+        cache.get("/c.bin");
+        assertEquals(200, cache.getTotalSize());
+        assertSame(a, cache.get("/a.bin"));
+        assertNotSame(b, cache.get("/b.bin"));
+        assertTrue(cache.getTotalSize() <= 250);
+    }
+
+    @Test
+    void invalidateDropsAFileOrEverythingUnderADirectory() throws IOException {
+        write("a.txt", "aaa");
+        write("dir/b.txt", "bbbb");
+        write("dir/c.txt", "ccccc");
+        StaticAssetCache cache = new StaticAssetCache(base, 1000, 10_000);
+        StaticAssetCache.Asset a = cache.get("/a.txt");
+        cache.get("/dir/b.txt");
+        cache.get("/dir/c.txt");
+        assertEquals(12, cache.getTotalSize());
+
+        cache.invalidate(base.resolve("dir"));
+        assertEquals(3, cache.getTotalSize());
+        cache.invalidate(base.resolve("a.txt"));
+        assertEquals(0, cache.getTotalSize());
+        assertNotSame(a, cache.get("/a.txt"));
+    }
+
+    @Test
+    void changedFileIsLoadedAgain() throws IOException {
+        write("a.txt", "old");
+        StaticAssetCache cache = new StaticAssetCache(base, 1000, 10_000);
+        StaticAssetCache.Asset old = cache.get("/a.txt");
+        write("a.txt", "newer");
+        StaticAssetCache.Asset current = cache.get("/a.txt");
+        assertEquals("newer", new String(bytes(current.body(false)), StandardCharsets.UTF_8));
+        assertNotEquals(old.getEtag(), current.getEtag());
+        assertEquals(5, cache.getTotalSize());
+    }
+
+    @Test
+    void gzipVariantHasItsOwnEtag() throws IOException {
+        String page = "<p>hello</p>\n".repeat(100);
+        write("index.html", page);
+        StaticAssetCache cache = new StaticAssetCache(base, 10_000, 100_000);
+        StaticAssetCache.Asset asset = cache.get("/index.html");
+        String etag = asset.getEtag();
+        assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", asset.getGzipEtag());
+        byte[] gzip = bytes(asset.body(true));
+        assertTrue(gzip.length < page.length());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(page.getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+        assertEquals(page.length() + gzip.length, cache.getTotalSize());
+
+        // the same content gets the same tags from another cache
+        StaticAssetCache.Asset again = new StaticAssetCache(base, 10_000, 100_000).get("/index.html");
+        assertEquals(etag, again.getEtag());
+        assertEquals(asset.getGzipEtag(), again.getGzipEtag());
+    }
+
+    @Test
+    void noGzipForSmallOrBinaryFiles() throws IOException {
+        write("small.html", "<p>hi</p>");
+        write("image.png", "x".repeat(1000));
+        StaticAssetCache cache = new StaticAssetCache(base, 10_000, 100_000);
+        assertNull(cache.get("/small.html").getGzipEtag());
+        assertNull(cache.get("/image.png").getGzipEtag());
+    }
+
+    @Test
+    void missingFilesAndFilesOutsideBaseDir() throws IOException {
+        Files.writeString(tempDir.toRealPath().resolve("secret.txt"), "secret");
+        StaticAssetCache cache = new StaticAssetCache(base, 1000, 10_000);
+        assertThrows(FileNotFound.class, () -> cache.get("/missing.txt"));
+        assertThrows(FileNotFound.class, () -> cache.get("/../secret.txt"));
+    }
+}
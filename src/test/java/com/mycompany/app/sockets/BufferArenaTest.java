@@ -0,0 +1,138 @@
+package com.mycompany.app.sockets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+// size classes, reuse, and which tier a released buffer ends up in
+class BufferArenaTest {
+    // more than the shared queue of a class ever holds
+    private static final int MORE_THAN_SHARED = 65;
+
+    // task on a thread of its own, what it threw is rethrown here
+    private static void run(Thread.Builder builder, Runnable task) throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        builder.start(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }).join();
+        if (failure.get() instanceof Error error) {
+            throw error;
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    // everything of the 32 KB class that is on the shared queue right now,
+    // taken and given back from a virtual thread
+    private static boolean sharedQueueHolds(byte[] array) throws InterruptedException {
+        AtomicReference<Boolean> found = new AtomicReference<>(false);
+        run(Thread.ofVirtual(), () -> {
+            List<byte[]> taken = new ArrayList<>();
+            for (int i = 0; i < MORE_THAN_SHARED; i++) {
+                byte[] next = BufferArena.acquireArray(32 * 1024);
+                found.set(found.get() || next == array);
+                taken.add(next);
+            }
+            taken.forEach(BufferArena::release);
+        });
+        return found.get();
+    }
+
+    @Test
+    void requestsGetTheSmallestClassThatFits() {
+        int[][] sizes = { { 1, 4096 }, { 4096, 4096 }, { 4097, 8192 }, { 20_000, 32768 }, { 65536, 65536 } };
+        for (int[] size : sizes) {
+            byte[] array = BufferArena.acquireArray(size[0]);
+            assertEquals(size[1], array.length, "array for " + size[0]);
+            BufferArena.release(array);
+            ByteBuffer buffer = BufferArena.acquireDirect(size[0]);
+            assertTrue(buffer.isDirect());
+            assertEquals(size[1], buffer.capacity(), "direct buffer for " + size[0]);
+            BufferArena.release(buffer);
+        }
+    }
+
+    @Test
+    void pastTheLargestClassIsAllocatedAndNotKept() {
+        byte[] array = BufferArena.acquireArray(65537);
+        assertEquals(65537, array.length);
+        BufferArena.release(array);
+        assertNotSame(array, BufferArena.acquireArray(65537));
+    }
+
+    @Test
+    void releasedBuffersAreReusedOnTheSameThread() throws InterruptedException {
+        run(Thread.ofPlatform(), () -> {
+            byte[] array = BufferArena.acquireArray(5000);
+            BufferArena.release(array);
+            assertSame(array, BufferArena.acquireArray(6000));
+            BufferArena.release(array);
+            // another class doesn't get it
+            byte[] smaller = BufferArena.acquireArray(100);
+            assertNotSame(array, smaller);
+            BufferArena.release(smaller);
+
+            ByteBuffer buffer = BufferArena.acquireDirect(5000);
+            buffer.put(new byte[100]).flip();
+            BufferArena.release(buffer);
+            ByteBuffer again = BufferArena.acquireDirect(5000);
+            assertSame(buffer, again);
+            assertEquals(0, again.position());
+            assertEquals(again.capacity(), again.limit());
+            BufferArena.release(again);
+        });
+    }
+
+    @Test
+    void buffersNotFromTheArenaAreNotKept() throws InterruptedException {
+        run(Thread.ofPlatform(), () -> {
+            byte[] odd = new byte[5000];
+            BufferArena.release(odd);
+            byte[] next = BufferArena.acquireArray(5000);
+            assertNotSame(odd, next);
+            BufferArena.release(next);
+            ByteBuffer heap = ByteBuffer.allocate(4096);
+            BufferArena.release(heap);
+            ByteBuffer direct = BufferArena.acquireDirect(4096);
+            assertNotSame(heap, direct);
+            BufferArena.release(direct);
+        });
+    }
+
+    @Test
+    void virtualThreadsReleaseToTheSharedQueue() throws InterruptedException {
+        AtomicReference<byte[]> released = new AtomicReference<>();
+        run(Thread.ofVirtual(), () -> {
+            byte[] array = BufferArena.acquireArray(32 * 1024);
+            BufferArena.release(array);
+            released.set(array);
+        });
+        // another virtual thread gets it back
+        assertTrue(sharedQueueHolds(released.get()));
+    }
+
+    @Test
+    void platformThreadsKeepTheirOwnFirst() throws InterruptedException {
+        AtomicReference<byte[]> released = new AtomicReference<>();
+        run(Thread.ofPlatform(), () -> {
+            byte[] array = BufferArena.acquireArray(32 * 1024);
+            BufferArena.release(array);
+            released.set(array);
+        });
+        assertFalse(sharedQueueHolds(released.get()));
+    }
+}
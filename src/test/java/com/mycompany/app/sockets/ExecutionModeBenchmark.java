@@ -0,0 +1,136 @@
+package com.mycompany.app.sockets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mycompany.app.Config.ConfigurationManager;
+
+/**
+ * Compares the cached, fixed and virtual thread execution modes of
+ * {@link Server.Builder} with a large number of concurrent slow clients.
+ *
+ * Every request lands on a handler that sleeps to simulate a call parked on
+ * JdbcTemplate/HikariCP, so the interesting numbers are the wall time and how
+ * many platform threads each mode needed to get through it.
+ *
+ * Not a unit test, run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.app.sockets.ExecutionModeBenchmark
+ * -Dexec.args="10000 100"}
+ * (clients, handler sleep in ms). 10k clients need an fd limit above 20k.
+ */
+public class ExecutionModeBenchmark {
+    private static final int FIXED_POOL_SIZE = 200;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long handlerMillis = args.length > 1 ? Long.parseLong(args[1]) : 100;
+
+        Server.Builder[] modes = {
+                new Server.Builder().withCachedThreadPool(),
+                new Server.Builder().withThreads(FIXED_POOL_SIZE),
+                new Server.Builder().withVirtualThreads()
+        };
+        String[] names = { "cached", "fixed(" + FIXED_POOL_SIZE + ")", "virtual" };
+
+        int port = ConfigurationManager.getInstance().getConfig().getPort();
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < modes.length; i++) {
+            ConfigurationManager.getInstance().getConfig().setPort(port + i);
+            results.add(run(names[i], modes[i], port + i, clients, handlerMillis));
+        }
+
+        System.out.println();
+        System.out.printf("%-12s %10s %10s %10s %12s %8s%n",
+                "mode", "wall ms", "p50 ms", "p99 ms", "peak threads", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(String name, Server.Builder builder, int port, int clients, long handlerMillis)
+            throws Exception {
+        Server server = builder.withMaxConnections(clients).onCompletion((socket, error) -> {
+        }).build();
+        server.get("/slow", (req, res) -> {
+            try {
+                Thread.sleep(handlerMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            res.setBody("done");
+            return res;
+        });
+
+        Thread acceptLoop = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "benchmark-accept-" + name);
+        acceptLoop.start();
+        Thread.sleep(500);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        long[] latencies = new long[clients];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(clients);
+        // one request per connection, closed by the server once it's answered
+        // instead of idling until keepAliveTimeout
+        byte[] request = ("GET /slow HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        long start = System.nanoTime();
+        // the clients themselves are virtual threads so they don't skew the
+        // platform thread count of the mode being measured
+        try (ExecutorService clientPool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int index = i;
+                clientPool.submit(() -> {
+                    long sent = System.nanoTime();
+                    try (Socket socket = new Socket("localhost", port)) {
+                        OutputStream out = socket.getOutputStream();
+                        out.write(request);
+                        out.flush();
+                        InputStream in = socket.getInputStream();
+                        if (in.readAllBytes().length == 0) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - sent;
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        long wall = System.nanoTime() - start;
+        int peakThreads = threads.getPeakThreadCount();
+
+        server.stop();
+        acceptLoop.join();
+
+        Arrays.sort(latencies);
+        return String.format("%-12s %10d %10d %10d %12d %8d", name,
+                wall / 1_000_000,
+                latencies[clients / 2] / 1_000_000,
+                latencies[(int) (clients * 0.99)] / 1_000_000,
+                peakThreads,
+                errors.get());
+    }
+}